@@ -0,0 +1,66 @@
+#!/usr/bin/env bash
+# Задержка и доля отказов при 10-кратной перегрузке с контролем допуска и без него.
+# Сначала измеряется пропускная способность при нормальной нагрузке, затем нагрузка
+# увеличивается в 10 раз: смешанные чтения и записи подписок.
+# Требования: собранный jar (mvn -B package -DskipTests), запущенная БД (docker compose up -d db), утилита hey.
+# Использование: bench/overload.sh [base-concurrency] [duration]
+set -euo pipefail
+
+BASE_CONCURRENCY=${1:-20}
+DURATION=${2:-30s}
+OVERLOAD_CONCURRENCY=$((BASE_CONCURRENCY * 10))
+JAR=target/subscription-0.0.1-SNAPSHOT.jar
+BASE_URL=http://localhost:8081
+
+wait_for_app() {
+    for _ in $(seq 1 60); do
+        curl -fs "$BASE_URL/users?limit=1" -o /dev/null && return 0
+        sleep 1
+    done
+    echo "Приложение не запустилось" >&2
+    return 1
+}
+
+seed() {
+    curl -fs -X POST "$BASE_URL/users" -H "Content-Type: application/json" \
+        -d '{"name": "Bench User", "email": "bench@example.com"}' -o /dev/null || true
+    curl -fs -X POST "$BASE_URL/subscriptions/users/1/batch" -H "Content-Type: application/json" \
+        -d '["Netflix", "YouTube Premium", "VK Музыка"]' -o /dev/null || true
+}
+
+load() {
+    local label=$1 concurrency=$2
+    local reads writes
+    reads=$(mktemp)
+    writes=$(mktemp)
+    # Записи составляют около 10% нагрузки; повторное добавление подписки идемпотентно.
+    hey -z "$DURATION" -c "$concurrency" "$BASE_URL/subscriptions/users/1" > "$reads" &
+    local reads_pid=$!
+    hey -z "$DURATION" -c $((concurrency / 10 + 1)) -m POST -H "Content-Type: application/json" \
+        -d '{"serviceName": "Netflix"}' "$BASE_URL/subscriptions/users/1" > "$writes"
+    wait "$reads_pid"
+    echo "-- $label: чтение (c=$concurrency)"
+    grep -E 'Requests/sec|50% in|99% in|\[[0-9]{3}\]' "$reads"
+    echo "-- $label: запись (c=$((concurrency / 10 + 1)))"
+    grep -E 'Requests/sec|50% in|99% in|\[[0-9]{3}\]' "$writes"
+    rm -f "$reads" "$writes"
+}
+
+run_mode() {
+    local mode=$1 enabled=$2
+    java -jar "$JAR" --subscription.admission.enabled="$enabled" \
+        --spring.profiles.active=prod > "target/bench-overload-$mode.log" 2>&1 &
+    local pid=$!
+    trap 'kill $pid 2>/dev/null || true' RETURN
+    wait_for_app
+    seed
+    hey -z 5s -c "$BASE_CONCURRENCY" "$BASE_URL/subscriptions/users/1" > /dev/null
+    echo "== $mode"
+    load "норма" "$BASE_CONCURRENCY"
+    load "перегрузка x10" "$OVERLOAD_CONCURRENCY"
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+}
+
+run_mode admission true
+run_mode no-admission false
@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# Сравнение основного приложения (сервлеты и JPA) и реактивного варианта (WebFlux и R2DBC) при большом
+# количестве одновременных соединений: пропускная способность, p99, количество потоков и RSS процесса.
+# Контроль допуска основного приложения отключается, чтобы сравнивать обработку, а не отказы.
+# Требования: собранные jar (mvn -B package -DskipTests и cd reactive && mvn -B package -DskipTests),
+# запущенная БД (docker compose up -d db), утилита hey; при большой нагрузке нужен ulimit -n выше concurrency.
+# Использование: bench/reactive.sh [concurrency] [duration]
+set -euo pipefail
+
+CONCURRENCY=${1:-5000}
+DURATION=${2:-30s}
+SERVLET_JAR=target/subscription-0.0.1-SNAPSHOT.jar
+REACTIVE_JAR=reactive/target/subscription-reactive-0.0.1-SNAPSHOT.jar
+SERVLET_URL=http://localhost:8081
+REACTIVE_URL=http://localhost:8082
+
+wait_for_app() {
+    local base_url=$1
+    for _ in $(seq 1 60); do
+        curl -fs "$base_url/users?limit=1" -o /dev/null && return 0
+        sleep 1
+    done
+    echo "Приложение не запустилось" >&2
+    return 1
+}
+
+seed() {
+    curl -fs -X POST "$SERVLET_URL/users" -H "Content-Type: application/json" \
+        -d '{"name": "Bench User", "email": "bench@example.com"}' -o /dev/null || true
+    curl -fs -X POST "$SERVLET_URL/subscriptions/users/1/batch" -H "Content-Type: application/json" \
+        -d '["Netflix", "YouTube Premium", "VK Музыка"]' -o /dev/null || true
+}
+
+load() {
+    local mode=$1 base_url=$2 pid=$3 path
+    hey -z 5s -c 50 "$base_url/subscriptions/users/1" > /dev/null
+    for path in /subscriptions/users/1 /subscriptions/top; do
+        echo "== $mode $path (c=$CONCURRENCY, $DURATION)"
+        hey -z "$DURATION" -c "$CONCURRENCY" "$base_url$path" \
+            | grep -E 'Requests/sec|99% in|Status code distribution|\[[0-9]{3}\]' &
+        local hey_pid=$!
+        sleep 10
+        echo "потоков: $(ps -o nlwp= -p "$pid" | tr -d ' '), RSS: $(($(ps -o rss= -p "$pid") / 1024)) МБ"
+        wait "$hey_pid"
+    done
+}
+
+java -jar "$SERVLET_JAR" --subscription.admission.enabled=false > target/bench-servlet.log 2>&1 &
+SERVLET_PID=$!
+trap 'kill $SERVLET_PID ${REACTIVE_PID:-} 2>/dev/null || true' EXIT
+wait_for_app "$SERVLET_URL"
+seed
+load servlet "$SERVLET_URL" "$SERVLET_PID"
+kill "$SERVLET_PID"
+wait "$SERVLET_PID" 2>/dev/null || true
+
+java -jar "$REACTIVE_JAR" > target/bench-reactive.log 2>&1 &
+REACTIVE_PID=$!
+wait_for_app "$REACTIVE_URL"
+load reactive "$REACTIVE_URL" "$REACTIVE_PID"
@@ -0,0 +1,55 @@
+#!/usr/bin/env bash
+# Время до первого успешного ответа /users и RSS процесса в обычном режиме и в режиме быстрого старта
+# (Spring AOT и архив CDS).
+# Требования: сборка mvn -B -Pfast-startup package -DskipTests, запущенная БД (docker compose up -d db).
+# Использование: bench/startup.sh [runs]
+set -euo pipefail
+
+RUNS=${1:-5}
+JAR=subscription-0.0.1-SNAPSHOT.jar
+FAST_STARTUP_DIR=target/fast-startup
+BASE_URL=http://localhost:8081
+
+now_millis() {
+    echo $(($(date +%s%N) / 1000000))
+}
+
+measure() {
+    local mode=$1
+    shift
+    local started pid elapsed rss
+    started=$(now_millis)
+    "$@" > "target/bench-startup-$mode.log" 2>&1 &
+    pid=$!
+    until curl -fs "$BASE_URL/users?limit=1" -o /dev/null; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "Приложение не запустилось, см. target/bench-startup-$mode.log" >&2
+            return 1
+        fi
+        sleep 0.05
+    done
+    elapsed=$(($(now_millis) - started))
+    rss=$(ps -o rss= -p "$pid" | tr -d ' ')
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    echo "$elapsed $((rss / 1024))"
+}
+
+run_mode() {
+    local mode=$1
+    shift
+    local total_time=0 total_rss=0 result
+    echo "== $mode"
+    for run in $(seq 1 "$RUNS"); do
+        result=$(measure "$mode" "$@")
+        read -r elapsed rss <<< "$result"
+        echo "запуск $run: первый ответ через $elapsed мс, RSS $rss МБ"
+        total_time=$((total_time + elapsed))
+        total_rss=$((total_rss + rss))
+    done
+    echo "среднее: первый ответ через $((total_time / RUNS)) мс, RSS $((total_rss / RUNS)) МБ"
+}
+
+run_mode default java -jar "$FAST_STARTUP_DIR/$JAR"
+run_mode fast-startup java -XX:SharedArchiveFile="$FAST_STARTUP_DIR/application.jsa" -Dspring.aot.enabled=true \
+    -jar "$FAST_STARTUP_DIR/$JAR"
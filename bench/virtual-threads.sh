@@ -0,0 +1,44 @@
+#!/usr/bin/env bash
+# Сравнение пропускной способности и p99 задержки в режимах платформенных и виртуальных потоков.
+# Требования: собранный jar (mvn -B package -DskipTests), запущенная БД (docker compose up -d db), утилита hey.
+# Использование: bench/virtual-threads.sh [concurrency] [duration]
+set -euo pipefail
+
+CONCURRENCY=${1:-1000}
+DURATION=${2:-30s}
+JAR=target/subscription-0.0.1-SNAPSHOT.jar
+BASE_URL=http://localhost:8081
+
+wait_for_app() {
+    for _ in $(seq 1 60); do
+        curl -fs "$BASE_URL/users?limit=1" -o /dev/null && return 0
+        sleep 1
+    done
+    echo "Приложение не запустилось" >&2
+    return 1
+}
+
+seed() {
+    curl -fs -X POST "$BASE_URL/users" -H "Content-Type: application/json" \
+        -d '{"name": "Bench User", "email": "bench@example.com"}' -o /dev/null || true
+    curl -fs -X POST "$BASE_URL/subscriptions/users/1/batch" -H "Content-Type: application/json" \
+        -d '["Netflix", "YouTube Premium", "VK Музыка"]' -o /dev/null || true
+}
+
+run_mode() {
+    local mode=$1 profiles=$2
+    java -jar "$JAR" --spring.profiles.active="$profiles" > "target/bench-$mode.log" 2>&1 &
+    local pid=$!
+    trap 'kill $pid 2>/dev/null || true' RETURN
+    wait_for_app
+    seed
+    hey -z 5s -c 50 "$BASE_URL/subscriptions/users/1" > /dev/null
+    echo "== $mode (c=$CONCURRENCY, $DURATION)"
+    hey -z "$DURATION" -c "$CONCURRENCY" "$BASE_URL/subscriptions/users/1" \
+        | grep -E 'Requests/sec|99% in|Status code distribution|\[[0-9]{3}\]'
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+}
+
+run_mode platform default
+run_mode virtual virtual-threads
@@ -0,0 +1,13 @@
+package ru.freeomsk.subscription.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class SubscriptionReactiveApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(SubscriptionReactiveApplication.class, args);
+    }
+
+}
@@ -0,0 +1,137 @@
+package ru.freeomsk.subscription.reactive.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.reactive.service.SubscriptionEventStream;
+import ru.freeomsk.subscription.reactive.service.SubscriptionService;
+
+import jakarta.validation.Valid;
+import java.util.List;
+
+/**
+ * Реактивный REST-контроллер для управления подписками.
+ * Списки возвращаются потоком: элементы записываются в ответ по мере чтения из базы данных.
+ */
+@RestController
+@RequestMapping("/subscriptions")
+public class SubscriptionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionController.class);
+    private final SubscriptionService subscriptionService;
+    private final SubscriptionEventStream eventStream;
+
+    /**
+     * Конструктор для создания нового экземпляра SubscriptionController с заданным сервисом.
+     *
+     * @param subscriptionService сервис подписок.
+     * @param eventStream поток событий изменения подписок.
+     */
+    public SubscriptionController(SubscriptionService subscriptionService, SubscriptionEventStream eventStream) {
+        this.subscriptionService = subscriptionService;
+        this.eventStream = eventStream;
+    }
+
+    /**
+     * POST /users/{userId} : Добавить новую подписку для пользователя.
+     *
+     * @param userId ID пользователя.
+     * @param subscriptionDTO данные подписки.
+     * @return созданная подписка.
+     */
+    @PostMapping("/users/{userId}")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<SubscriptionDTO> addSubscription(@PathVariable Long userId, @Valid @RequestBody SubscriptionDTO subscriptionDTO) {
+        logger.debug("Получен запрос на добавление подписки для пользователя с ID: {}", userId);
+        return subscriptionService.addSubscription(userId, subscriptionDTO);
+    }
+
+    /**
+     * POST /users/{userId}/batch : Добавить пользователю несколько подписок за один запрос.
+     *
+     * @param userId ID пользователя.
+     * @param serviceNames названия сервисов.
+     * @return созданные подписки.
+     */
+    @PostMapping("/users/{userId}/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Flux<SubscriptionDTO> addSubscriptions(@PathVariable Long userId, @RequestBody List<String> serviceNames) {
+        logger.debug("Получен запрос на пакетное добавление подписок для пользователя с ID: {}", userId);
+        return subscriptionService.addSubscriptions(userId, serviceNames);
+    }
+
+    /**
+     * GET /users/{userId} : Получить все подписки пользователя.
+     *
+     * @param userId ID пользователя.
+     * @return подписки пользователя.
+     */
+    @GetMapping("/users/{userId}")
+    public Flux<SubscriptionDTO> getUserSubscriptions(@PathVariable Long userId) {
+        logger.debug("Получен запрос на получение подписок для пользователя с ID: {}", userId);
+        return subscriptionService.getUserSubscriptions(userId);
+    }
+
+    /**
+     * DELETE /{subscriptionId}/users/{userId} : Удалить подписку пользователя.
+     *
+     * @param userId ID пользователя.
+     * @param subscriptionId ID подписки.
+     * @return завершение удаления.
+     */
+    @DeleteMapping("{subscriptionId}/users/{userId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> deleteSubscription(@PathVariable Long userId, @PathVariable Long subscriptionId) {
+        logger.debug("Получен запрос на удаление подписки с ID: {} для пользователя с ID: {}", subscriptionId, userId);
+        return subscriptionService.deleteSubscription(userId, subscriptionId);
+    }
+
+    /**
+     * GET /top : Получить ТОП-N подписок по количеству.
+     * С параметром window учитываются только подписки, созданные за период.
+     * Тип ответа указан явно, чтобы поток строк записывался массивом JSON, а не текстом.
+     *
+     * @param limit количество сервисов в ответе (по умолчанию 3).
+     * @param window период: 1h, 24h или 7d (необязательно, по умолчанию за все время).
+     * @return названия сервисов топовых подписок.
+     */
+    @GetMapping(path = "/top", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<String> getTopSubscriptions(@RequestParam(defaultValue = "3") int limit,
+                                            @RequestParam(required = false) String window) {
+        logger.debug("Получен запрос на получение {} популярных подписок", limit);
+        return window == null
+                ? subscriptionService.getTopSubscriptions(limit)
+                : subscriptionService.getTopSubscriptions(window, limit);
+    }
+
+    /**
+     * GET /stream : Получить поток событий добавления и удаления подписок (Server-Sent Events).
+     *
+     * @param userId ID пользователя для фильтрации событий (необязательно).
+     * @param serviceName название сервиса для фильтрации событий (необязательно).
+     * @param lastEventId ID последнего полученного события (необязательно).
+     * @return поток событий.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamSubscriptionEvents(@RequestParam(required = false) Long userId,
+                                                                  @RequestParam(required = false) String serviceName,
+                                                                  @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        logger.debug("Получен запрос на подключение к потоку событий подписок");
+        return eventStream.subscribe(userId, serviceName, lastEventId);
+    }
+}
@@ -0,0 +1,95 @@
+package ru.freeomsk.subscription.reactive.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.dto.UserPageDTO;
+import ru.freeomsk.subscription.exception.OperationNotSupportedException;
+import ru.freeomsk.subscription.reactive.service.UserService;
+
+import jakarta.validation.Valid;
+
+/**
+ * Реактивный REST-контроллер для управления пользователями.
+ */
+@RestController
+@RequestMapping("/users")
+public class UserController {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserController.class);
+    private final UserService userService;
+
+    /**
+     * Конструктор для создания нового экземпляра UserController с заданным сервисом.
+     *
+     * @param userService сервис пользователей.
+     */
+    public UserController(UserService userService) {
+        this.userService = userService;
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<UserDTO> createUser(@Valid @RequestBody UserDTO userDTO) {
+        logger.debug("Получен запрос на создание пользователя: {}", userDTO);
+        return userService.createUser(userDTO);
+    }
+
+    @PostMapping(path = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<Void> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType) {
+        logger.debug("Получен запрос на импорт пользователей в формате: {}", contentType);
+        return Mono.error(new OperationNotSupportedException("Импорт пользователей недоступен в реактивном варианте"));
+    }
+
+    @GetMapping("/{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<UserDTO> getUserById(@PathVariable Long id) {
+        logger.debug("Получен запрос на получение пользователя с ID: {}", id);
+        return userService.getUserById(id)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Пользователь не найден")));
+    }
+
+    @PutMapping("/{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<UserDTO> updateUser(@PathVariable Long id, @Valid @RequestBody UserDTO userDTO) {
+        logger.debug("Получен запрос на обновление пользователя с ID: {}", id);
+        return userService.updateUser(id, userDTO);
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> deleteUser(@PathVariable Long id) {
+        logger.debug("Получен запрос на удаление пользователя с ID: {}", id);
+        return userService.deleteUser(id);
+    }
+
+    @GetMapping
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<UserPageDTO> getAllUsers(@RequestParam(required = false) Long after,
+                                         @RequestParam(defaultValue = "100") int limit) {
+        logger.debug("Получен запрос на получение пользователей после ID: {}", after);
+        return userService.getUsersPage(after, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserDTO> streamAllUsers() {
+        logger.debug("Получен запрос на потоковое получение всех пользователей");
+        return userService.streamAllUsers();
+    }
+}
@@ -0,0 +1,33 @@
+package ru.freeomsk.subscription.reactive.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Представляет сущность сервиса в системе подписок.
+ * Этот класс сопоставлен с таблицей "services" в базе данных.
+ */
+@Table("services")
+public class NameService {
+
+    @Id
+    private Long id;
+
+    private String serviceName;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+}
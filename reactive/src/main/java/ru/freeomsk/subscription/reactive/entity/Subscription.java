@@ -0,0 +1,65 @@
+package ru.freeomsk.subscription.reactive.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * Представляет подписку пользователя на сервис.
+ * Этот класс сопоставлен с таблицей "subscriptions"; связи хранятся как ID пользователя и сервиса.
+ */
+@Table("subscriptions")
+public class Subscription {
+
+    /**
+     * Имя ограничения уникальности пары пользователь-сервис.
+     */
+    public static final String USER_SERVICE_CONSTRAINT = "uk_subscriptions_user_service";
+
+    /**
+     * Имя внешнего ключа на таблицу пользователей.
+     */
+    public static final String USER_FOREIGN_KEY = "fk_subscriptions_user";
+
+    @Id
+    private Long id;
+
+    private Long userId;
+
+    private Long serviceId;
+
+    private Instant createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getServiceId() {
+        return serviceId;
+    }
+
+    public void setServiceId(Long serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
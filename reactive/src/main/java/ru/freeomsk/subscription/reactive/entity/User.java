@@ -0,0 +1,43 @@
+package ru.freeomsk.subscription.reactive.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Представляет пользователя системы подписок.
+ * Этот класс сопоставлен с таблицей "users"; ID назначается базой данных при вставке.
+ */
+@Table("users")
+public class User {
+
+    @Id
+    private Long id;
+
+    private String name;
+
+    private String email;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+}
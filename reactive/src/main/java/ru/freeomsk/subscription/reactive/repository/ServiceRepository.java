@@ -0,0 +1,50 @@
+package ru.freeomsk.subscription.reactive.repository;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import ru.freeomsk.subscription.reactive.entity.NameService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Реактивный репозиторий для работы с сущностями сервиса в системе подписок.
+ */
+public interface ServiceRepository extends R2dbcRepository<NameService, Long> {
+
+    /**
+     * Находит сервис по его имени.
+     *
+     * @param serviceName имя сервиса, по которому нужно выполнить поиск.
+     * @return найденный сервис или пустой результат, если сервис не найден.
+     */
+    Mono<NameService> findByServiceName(String serviceName);
+
+    /**
+     * Находит сервисы по именам, создавая отсутствующие, одним запросом
+     * с INSERT ... ON CONFLICT DO NOTHING в общем табличном выражении.
+     * Сервис, вставленный параллельной транзакцией после начала запроса, не виден
+     * в его снимке данных и не попадает в результат.
+     *
+     * @param serviceNames названия сервисов.
+     * @return найденные и созданные сервисы.
+     */
+    @Query("WITH input (service_name) AS (SELECT DISTINCT unnest(CAST(:serviceNames AS TEXT[]))), " +
+            "inserted AS (" +
+            "INSERT INTO services (id, service_name) " +
+            "SELECT nextval('services_seq'), service_name FROM input " +
+            "ON CONFLICT (service_name) DO NOTHING " +
+            "RETURNING id, service_name) " +
+            "SELECT id, service_name FROM inserted " +
+            "UNION ALL " +
+            "SELECT s.id, s.service_name FROM services s JOIN input i ON i.service_name = s.service_name")
+    Flux<NameService> resolve(String[] serviceNames);
+
+    /**
+     * Находит сервисы по именам.
+     *
+     * @param serviceNames названия сервисов.
+     * @return найденные сервисы.
+     */
+    @Query("SELECT id, service_name FROM services WHERE service_name = ANY (CAST(:serviceNames AS TEXT[]))")
+    Flux<NameService> findAllByServiceNames(String[] serviceNames);
+}
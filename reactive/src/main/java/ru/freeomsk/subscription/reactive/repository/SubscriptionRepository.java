@@ -0,0 +1,158 @@
+package ru.freeomsk.subscription.reactive.repository;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.reactive.entity.Subscription;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+/**
+ * Реактивный репозиторий для управления сущностями {@link Subscription}.
+ */
+public interface SubscriptionRepository extends R2dbcRepository<Subscription, Long> {
+
+    /**
+     * Выражение SQL с ID текущей транзакции в виде 64-битного числа, как его ожидают
+     * индексы популярности узлов на Spring MVC.
+     */
+    String CURRENT_TRANSACTION_ID = "CAST(CAST(pg_current_xact_id() AS text) AS BIGINT)";
+
+    /**
+     * Добавленная подписка.
+     *
+     * @param id ID подписки.
+     * @param serviceId ID сервиса.
+     * @param createdAt время создания в секундах эпохи.
+     * @param transactionId ID добавившей подписку транзакции.
+     */
+    record InsertedSubscription(Long id, Long serviceId, Long createdAt, Long transactionId) {
+    }
+
+    /**
+     * Удаленная подписка.
+     *
+     * @param id ID подписки.
+     * @param serviceName название сервиса.
+     * @param createdAt время создания в секундах эпохи или null, если оно неизвестно.
+     * @param transactionId ID удалившей подписку транзакции.
+     */
+    record DeletedSubscription(Long id, String serviceName, Long createdAt, Long transactionId) {
+    }
+
+    /**
+     * Находит сервисы с наибольшим количеством подписок.
+     *
+     * @param limit максимальное количество сервисов.
+     * @return названия сервисов по убыванию количества подписок.
+     */
+    @Query("SELECT n.service_name " +
+            "FROM subscriptions s JOIN services n ON n.id = s.service_id " +
+            "GROUP BY n.service_name " +
+            "ORDER BY COUNT(*) DESC, n.service_name " +
+            "LIMIT :limit")
+    Flux<String> findTopServiceNames(int limit);
+
+    /**
+     * Находит сервисы с наибольшим количеством подписок, созданных начиная с указанного момента.
+     *
+     * @param since начало периода.
+     * @param limit максимальное количество сервисов.
+     * @return названия сервисов по убыванию количества подписок за период.
+     */
+    @Query("SELECT n.service_name " +
+            "FROM subscriptions s JOIN services n ON n.id = s.service_id " +
+            "WHERE s.created_at >= :since " +
+            "GROUP BY n.service_name " +
+            "ORDER BY COUNT(*) DESC, n.service_name " +
+            "LIMIT :limit")
+    Flux<String> findTopServiceNamesCreatedSince(Instant since, int limit);
+
+    /**
+     * Находит подписки пользователя одним запросом с соединением таблицы сервисов.
+     *
+     * @param userId ID пользователя.
+     * @return подписки пользователя, упорядоченные по ID.
+     */
+    @Query("SELECT s.id, n.service_name, s.user_id " +
+            "FROM subscriptions s JOIN services n ON n.id = s.service_id " +
+            "WHERE s.user_id = :userId " +
+            "ORDER BY s.id")
+    Flux<SubscriptionDTO> findDTOsByUserId(Long userId);
+
+    /**
+     * Находит подписки пользователя на указанные сервисы.
+     *
+     * @param userId ID пользователя.
+     * @param serviceIds ID сервисов.
+     * @return существующие подписки пользователя на эти сервисы.
+     */
+    @Query("SELECT s.id, n.service_name, s.user_id " +
+            "FROM subscriptions s JOIN services n ON n.id = s.service_id " +
+            "WHERE s.user_id = :userId AND s.service_id = ANY (CAST(:serviceIds AS BIGINT[]))")
+    Flux<SubscriptionDTO> findDTOsByUserIdAndServiceIds(Long userId, Long[] serviceIds);
+
+    /**
+     * Добавляет подписки пользователя на сервисы одним запросом, пропуская существующие.
+     * ID подписки берется из последовательности напрямую, как при вставке по умолчанию.
+     *
+     * @param userId ID пользователя.
+     * @param serviceIds ID сервисов.
+     * @return добавленные подписки; подписки, которые уже существовали, не возвращаются.
+     */
+    @Query("INSERT INTO subscriptions (id, user_id, service_id) " +
+            "SELECT nextval('subscriptions_seq'), :userId, service_id " +
+            "FROM unnest(CAST(:serviceIds AS BIGINT[])) AS service_id " +
+            "ON CONFLICT ON CONSTRAINT " + Subscription.USER_SERVICE_CONSTRAINT + " DO NOTHING " +
+            "RETURNING id, service_id, CAST(extract(epoch FROM created_at) AS BIGINT) AS created_at, " +
+            CURRENT_TRANSACTION_ID + " AS transaction_id")
+    Flux<InsertedSubscription> insertMissing(Long userId, Long[] serviceIds);
+
+    /**
+     * Находит ID подписки пользователя на сервис.
+     *
+     * @param userId ID пользователя.
+     * @param serviceId ID сервиса.
+     * @return ID подписки или пустой результат, если подписки нет.
+     */
+    @Query("SELECT id FROM subscriptions WHERE user_id = :userId AND service_id = :serviceId")
+    Mono<Long> findIdByUserIdAndServiceId(Long userId, Long serviceId);
+
+    /**
+     * Удаляет подписку одним условным запросом, если она принадлежит пользователю.
+     *
+     * @param id ID подписки.
+     * @param userId ID пользователя.
+     * @return удаленная подписка или пустой результат, если ничего не удалено.
+     */
+    @Query("WITH deleted AS (" +
+            "DELETE FROM subscriptions WHERE id = :id AND user_id = :userId RETURNING id, service_id, created_at) " +
+            "SELECT d.id, n.service_name, CAST(extract(epoch FROM d.created_at) AS BIGINT) AS created_at, " +
+            CURRENT_TRANSACTION_ID + " AS transaction_id " +
+            "FROM deleted d JOIN services n ON n.id = d.service_id")
+    Mono<DeletedSubscription> deleteOwned(Long id, Long userId);
+
+    /**
+     * Удаляет все подписки пользователя одним запросом.
+     *
+     * @param userId ID пользователя.
+     * @return удаленные подписки.
+     */
+    @Query("WITH deleted AS (" +
+            "DELETE FROM subscriptions WHERE user_id = :userId RETURNING id, service_id, created_at) " +
+            "SELECT d.id, n.service_name, CAST(extract(epoch FROM d.created_at) AS BIGINT) AS created_at, " +
+            CURRENT_TRANSACTION_ID + " AS transaction_id " +
+            "FROM deleted d JOIN services n ON n.id = d.service_id")
+    Flux<DeletedSubscription> deleteAllByUserId(Long userId);
+
+    /**
+     * Находит ID владельца подписки.
+     *
+     * @param id ID подписки.
+     * @return ID пользователя или пустой результат, если подписка не существует.
+     */
+    @Query("SELECT user_id FROM subscriptions WHERE id = :id")
+    Mono<Long> findUserIdById(Long id);
+}
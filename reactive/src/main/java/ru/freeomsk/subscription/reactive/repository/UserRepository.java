@@ -0,0 +1,44 @@
+package ru.freeomsk.subscription.reactive.repository;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.reactive.entity.User;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Реактивный репозиторий для управления сущностями {@link User}.
+ */
+public interface UserRepository extends R2dbcRepository<User, Long> {
+
+    /**
+     * Находит страницу пользователей с ID больше указанного курсора (keyset-пагинация).
+     *
+     * @param after ID последнего пользователя предыдущей страницы.
+     * @param limit размер страницы.
+     * @return пользователи, упорядоченные по ID.
+     */
+    @Query("SELECT id, name, email FROM users WHERE id > :after ORDER BY id LIMIT :limit")
+    Flux<UserDTO> findPageAfter(Long after, int limit);
+
+    /**
+     * Читает всех пользователей одним запросом. Строки передаются подписчику по мере чтения
+     * из соединения с учетом его запроса на данные.
+     *
+     * @return пользователи, упорядоченные по ID.
+     */
+    @Query("SELECT id, name, email FROM users ORDER BY id")
+    Flux<UserDTO> streamAll();
+
+    /**
+     * Удаляет пользователя одним запросом. Подписки пользователя должны быть удалены заранее.
+     *
+     * @param id ID пользователя.
+     * @return количество удаленных строк.
+     */
+    @Modifying
+    @Query("DELETE FROM users WHERE id = :id")
+    Mono<Integer> deleteUserById(Long id);
+}
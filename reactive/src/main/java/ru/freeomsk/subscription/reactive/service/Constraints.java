@@ -0,0 +1,34 @@
+package ru.freeomsk.subscription.reactive.service;
+
+import io.r2dbc.postgresql.api.PostgresqlException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Распознавание нарушений именованных ограничений базы данных.
+ */
+final class Constraints {
+
+    private Constraints() {
+    }
+
+    /**
+     * Проверяет, вызвано ли исключение нарушением указанного ограничения.
+     *
+     * @param exception исключение.
+     * @param constraintName имя ограничения в схеме базы данных.
+     * @return true, если нарушено указанное ограничение.
+     */
+    static boolean isViolated(Throwable exception, String constraintName) {
+        if (!(exception instanceof DataIntegrityViolationException)) {
+            return false;
+        }
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PostgresqlException violation) {
+                return violation.getErrorDetails().getConstraintName()
+                        .map(constraintName::equalsIgnoreCase)
+                        .orElse(false);
+            }
+        }
+        return false;
+    }
+}
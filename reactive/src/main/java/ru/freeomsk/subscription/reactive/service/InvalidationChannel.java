@@ -0,0 +1,175 @@
+package ru.freeomsk.subscription.reactive.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+import ru.freeomsk.subscription.service.InvalidationEvent;
+import ru.freeomsk.subscription.service.InvalidationMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Канал изменений PostgreSQL LISTEN/NOTIFY, общий с основным приложением.
+ * Изменения этого узла отправляются через pg_notify в формате шины инвалидации основного
+ * приложения, чтобы его узлы сбросили свои кэши. Уведомления отправляются последовательно,
+ * пакетами в пределах ограничения размера NOTIFY, и нумеруются по узлу-отправителю.
+ * Полученные изменения всех узлов, включая этот, доступны как общий поток; соединение
+ * для LISTEN открывается вне пула, пока у потока есть подписчики, и восстанавливается при разрыве.
+ * После переподключения или при пропуске номера уведомления поток сообщает, что изменения
+ * могли быть потеряны.
+ */
+@Component
+public class InvalidationChannel {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidationChannel.class);
+
+    private final DatabaseClient databaseClient;
+    private final ObjectMapper objectMapper;
+    private final ConnectionFactory listenerConnectionFactory;
+    private final boolean enabled;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final InvalidationMessage.Sequences lastSequences = new InvalidationMessage.Sequences();
+    private final Sinks.Many<InvalidationEvent> outgoing = Sinks.many().unicast().onBackpressureBuffer();
+    private final Disposable publisher;
+    private final Flux<Received> events;
+
+    /**
+     * Конструктор для создания экземпляра InvalidationChannel.
+     *
+     * @param databaseClient клиент для отправки уведомлений.
+     * @param objectMapper преобразователь JSON.
+     * @param properties свойства spring.r2dbc для соединения слушателя.
+     * @param enabled включена ли рассылка изменений другим узлам.
+     * @param channel имя канала уведомлений.
+     */
+    public InvalidationChannel(DatabaseClient databaseClient, ObjectMapper objectMapper, R2dbcProperties properties,
+                               @Value("${subscription.invalidation.enabled:true}") boolean enabled,
+                               @Value("${subscription.invalidation.channel:subscription_invalidation}") String channel) {
+        this.databaseClient = databaseClient;
+        this.objectMapper = objectMapper;
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(properties.getUrl()).mutate();
+        if (properties.getUsername() != null) {
+            options.option(ConnectionFactoryOptions.USER, properties.getUsername());
+        }
+        if (properties.getPassword() != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, properties.getPassword());
+        }
+        this.listenerConnectionFactory = ConnectionFactories.get(options.build());
+        this.enabled = enabled;
+        this.channel = channel;
+        this.publisher = outgoing.asFlux()
+                .bufferTimeout(InvalidationMessage.MAX_BATCH, Duration.ofMillis(10))
+                .concatMap(batch -> Flux.fromIterable(InvalidationMessage.chunks(batch, objectMapper)).concatMap(this::send))
+                .subscribe();
+        this.events = Flux.usingWhen(Mono.from(listenerConnectionFactory.create()), this::listen, Connection::close)
+                .doOnError(e -> logger.warn("Соединение слушателя канала изменений потеряно", e))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .share();
+    }
+
+    /**
+     * Отправляет изменения другим узлам. Вызывается после фиксации изменений.
+     *
+     * @param changes изменения в порядке их выполнения.
+     */
+    public void publish(List<InvalidationEvent> changes) {
+        if (!enabled) {
+            return;
+        }
+        for (InvalidationEvent change : changes) {
+            outgoing.emitNext(change, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+        }
+    }
+
+    /**
+     * Возвращает общий поток уведомлений, полученных из канала.
+     *
+     * @return поток уведомлений всех узлов.
+     */
+    public Flux<Received> events() {
+        return events;
+    }
+
+    /**
+     * Останавливает отправку уведомлений.
+     */
+    @PreDestroy
+    public void close() {
+        publisher.dispose();
+    }
+
+    private Flux<Received> listen(Connection connection) {
+        PostgresqlConnection postgresqlConnection = (PostgresqlConnection) connection;
+        Flux<Received> reconnected = Flux.defer(() -> connections.incrementAndGet() > 1
+                ? Flux.just(new Received(List.of(), true))
+                : Flux.empty());
+        return postgresqlConnection.createStatement("LISTEN " + channel).execute()
+                .flatMap(PostgresqlResult::getRowsUpdated)
+                .doOnComplete(() -> logger.info("Подписка на канал изменений {} установлена", channel))
+                .thenMany(reconnected.concatWith(postgresqlConnection.getNotifications()
+                        .mapNotNull(notification -> receive(notification.getParameter()))));
+    }
+
+    private Received receive(String payload) {
+        InvalidationMessage message;
+        try {
+            message = objectMapper.readValue(payload, InvalidationMessage.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("Некорректное уведомление об изменениях: {}", payload, e);
+            return null;
+        }
+        return new Received(message.events(), lastSequences.missed(message));
+    }
+
+    private Mono<Void> send(List<InvalidationEvent> changes) {
+        // Номер расходуется и при ошибке отправки: получатели обнаружат пропуск.
+        InvalidationMessage message = new InvalidationMessage(nodeId, sequence.incrementAndGet(), changes);
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            logger.warn("Не удалось отправить уведомление об изменениях ({} событий)", changes.size(), e);
+            return Mono.empty();
+        }
+        return databaseClient.sql("SELECT pg_notify(:channel, :payload)")
+                .bind("channel", channel)
+                .bind("payload", payload)
+                .then()
+                .onErrorResume(e -> {
+                    logger.warn("Не удалось отправить уведомление об изменениях ({} событий)", changes.size(), e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Уведомление, полученное из канала.
+     *
+     * @param events изменения в порядке их выполнения.
+     * @param missed true, если предшествующие изменения могли быть потеряны.
+     */
+    public record Received(List<InvalidationEvent> events, boolean missed) {
+    }
+}
@@ -0,0 +1,113 @@
+package ru.freeomsk.subscription.reactive.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import ru.freeomsk.subscription.dto.SubscriptionEventDTO;
+import ru.freeomsk.subscription.service.InvalidationEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Поток событий добавления и удаления подписок для клиентов Server-Sent Events.
+ * События строятся из уведомлений канала изменений, поэтому включают изменения
+ * всех узлов, в том числе основного приложения. Прошлые события не хранятся:
+ * клиент, переподключившийся с заголовком Last-Event-ID, и все клиенты после возможной
+ * потери уведомлений получают событие reset и должны перечитать состояние через REST API.
+ * Подписчик, не успевающий читать события, отключается при переполнении буфера.
+ */
+@Component
+public class SubscriptionEventStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionEventStream.class);
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final InvalidationChannel channel;
+    private final int bufferSize;
+    private final Duration heartbeatInterval;
+    private final Duration timeout;
+
+    /**
+     * Конструктор для создания экземпляра SubscriptionEventStream.
+     *
+     * @param channel канал изменений.
+     * @param bufferSize размер буфера неотправленных событий одного подписчика.
+     * @param heartbeatInterval интервал отправки комментария для поддержания соединения.
+     * @param timeout время, после которого соединение закрывается и клиент переподключается.
+     */
+    public SubscriptionEventStream(InvalidationChannel channel,
+                                   @Value("${subscription.stream.buffer-size:256}") int bufferSize,
+                                   @Value("${subscription.stream.heartbeat-interval:15s}") Duration heartbeatInterval,
+                                   @Value("${subscription.stream.timeout:30m}") Duration timeout) {
+        this.channel = channel;
+        this.bufferSize = Math.max(bufferSize, 1);
+        this.heartbeatInterval = heartbeatInterval;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Возвращает поток событий для нового подписчика.
+     * Фильтры применяются к каждому событию; null означает отсутствие фильтра.
+     *
+     * @param userId ID пользователя, события которого нужно получать, или null.
+     * @param serviceName название сервиса, события которого нужно получать, или null.
+     * @param lastEventId ID последнего полученного клиентом события или null.
+     * @return поток событий.
+     */
+    public Flux<ServerSentEvent<Object>> subscribe(Long userId, String serviceName, String lastEventId) {
+        Flux<ServerSentEvent<Object>> events = channel.events()
+                .concatMapIterable(received -> toEvents(received, userId, serviceName));
+        Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(heartbeatInterval)
+                .map(tick -> ServerSentEvent.builder().comment("").build());
+        Flux<ServerSentEvent<Object>> start = lastEventId == null ? Flux.empty() : Flux.just(reset());
+        return start.concatWith(Flux.merge(events, heartbeats))
+                .take(timeout)
+                .onBackpressureBuffer(bufferSize, BufferOverflowStrategy.ERROR)
+                .onErrorResume(Exceptions::isOverflow, e -> {
+                    logger.warn("Подписчик потока событий отключен: буфер из {} событий переполнен", bufferSize);
+                    return Flux.empty();
+                });
+    }
+
+    private List<ServerSentEvent<Object>> toEvents(InvalidationChannel.Received received, Long userId, String serviceName) {
+        List<ServerSentEvent<Object>> events = new ArrayList<>();
+        if (received.missed()) {
+            events.add(reset());
+        }
+        for (InvalidationEvent change : received.events()) {
+            SubscriptionEventDTO.Type type = switch (change.type()) {
+                case SUBSCRIPTION_ADDED -> SubscriptionEventDTO.Type.ADDED;
+                case SUBSCRIPTION_DELETED -> SubscriptionEventDTO.Type.DELETED;
+                default -> null;
+            };
+            if (type == null
+                    || userId != null && !userId.equals(change.userId())
+                    || serviceName != null && !Objects.equals(serviceName, change.serviceName())) {
+                continue;
+            }
+            SubscriptionEventDTO event = new SubscriptionEventDTO(type, change.subscriptionId(),
+                    change.serviceName(), change.userId());
+            events.add(ServerSentEvent.builder()
+                    .id(epoch + "-" + sequence.incrementAndGet())
+                    .event(type.name().toLowerCase(Locale.ROOT))
+                    .data(event)
+                    .build());
+        }
+        return events;
+    }
+
+    private static ServerSentEvent<Object> reset() {
+        return ServerSentEvent.builder().event("reset").data("").build();
+    }
+}
@@ -0,0 +1,314 @@
+package ru.freeomsk.subscription.reactive.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.exception.SubscriptionNotBelongToUserException;
+import ru.freeomsk.subscription.exception.SubscriptionNotFoundException;
+import ru.freeomsk.subscription.exception.UnsupportedWindowException;
+import ru.freeomsk.subscription.exception.UserNotFoundException;
+import ru.freeomsk.subscription.reactive.entity.Subscription;
+import ru.freeomsk.subscription.reactive.repository.ServiceRepository;
+import ru.freeomsk.subscription.reactive.repository.SubscriptionRepository;
+import ru.freeomsk.subscription.reactive.repository.UserRepository;
+import ru.freeomsk.subscription.service.InvalidationEvent;
+import ru.freeomsk.subscription.service.PopularityWindow;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Реактивный сервис для управления подписками.
+ * ID сервисов кэшируются по названию в ограниченном кэше: сервисы не удаляются и не переименовываются.
+ * ТОП подписок рассчитывается запросом к базе данных с группировкой по всем подпискам, в отличие
+ * от индекса популярности основного приложения; результат кэшируется на короткое время,
+ * а параллельные запросы одного ТОПа объединяются в один запрос.
+ * После изменений подписок они публикуются в канал изменений.
+ */
+@Service
+public class SubscriptionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionService.class);
+    private static final int MAX_TOP_QUERIES = 1000;
+    private final SubscriptionRepository subscriptionRepository;
+    private final UserRepository userRepository;
+    private final ServiceRepository serviceRepository;
+    private final InvalidationChannel invalidationChannel;
+    private final Cache<String, Long> serviceIds;
+    private final AsyncCache<TopQuery, List<String>> topServices;
+    private final int maxTopLimit;
+
+    /**
+     * Конструктор для создания экземпляра SubscriptionService.
+     *
+     * @param subscriptionRepository репозиторий для работы с подписками.
+     * @param userRepository репозиторий для работы с пользователями.
+     * @param serviceRepository репозиторий для работы с сервисами.
+     * @param invalidationChannel канал изменений.
+     * @param serviceCacheSize максимальное количество сервисов в кэше ID.
+     * @param topCacheTtl время хранения рассчитанного ТОПа подписок.
+     * @param maxTopLimit наибольшее количество сервисов в ТОПе подписок.
+     */
+    public SubscriptionService(SubscriptionRepository subscriptionRepository, UserRepository userRepository,
+                               ServiceRepository serviceRepository, InvalidationChannel invalidationChannel,
+                               @Value("${subscription.service-cache.maximum-size:1000}") long serviceCacheSize,
+                               @Value("${subscription.top.cache-ttl:1s}") Duration topCacheTtl,
+                               @Value("${subscription.top.max-limit:100}") int maxTopLimit) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.userRepository = userRepository;
+        this.serviceRepository = serviceRepository;
+        this.invalidationChannel = invalidationChannel;
+        this.serviceIds = Caffeine.newBuilder()
+                .maximumSize(serviceCacheSize)
+                .build();
+        this.topServices = Caffeine.newBuilder()
+                .maximumSize(MAX_TOP_QUERIES)
+                .expireAfterWrite(topCacheTtl)
+                .buildAsync();
+        this.maxTopLimit = maxTopLimit;
+    }
+
+    /**
+     * Добавляет новую подписку для указанного пользователя.
+     * Операция идемпотентна: если пользователь уже подписан на сервис,
+     * возвращается существующая подписка. Отсутствие пользователя определяется
+     * по нарушению внешнего ключа.
+     *
+     * @param userId ID пользователя, для которого добавляется подписка.
+     * @param subscriptionDTO объект, содержащий данные о подписке.
+     * @return объект SubscriptionDTO с данными о созданной подписке.
+     * @throws UserNotFoundException если пользователь с указанным ID не найден.
+     */
+    public Mono<SubscriptionDTO> addSubscription(Long userId, SubscriptionDTO subscriptionDTO) {
+        logger.debug("Добавление подписки для пользователя с ID: {}", userId);
+        String serviceName = subscriptionDTO.getServiceName();
+        return resolveIds(Set.of(serviceName))
+                .flatMap(ids -> {
+                    Long serviceId = ids.get(serviceName);
+                    return subscriptionRepository.insertMissing(userId, new Long[]{serviceId})
+                            .next()
+                            .map(inserted -> {
+                                invalidationChannel.publish(List.of(InvalidationEvent.subscriptionAdded(userId,
+                                        inserted.id(), serviceName, inserted.createdAt(), inserted.transactionId())));
+                                return inserted.id();
+                            })
+                            // Пользователь уже подписан на сервис: повторное добавление возвращает существующую подписку.
+                            .switchIfEmpty(Mono.defer(() -> subscriptionRepository.findIdByUserIdAndServiceId(userId, serviceId)));
+                })
+                .map(subscriptionId -> {
+                    subscriptionDTO.setId(subscriptionId);
+                    subscriptionDTO.setUserId(userId);
+                    return subscriptionDTO;
+                })
+                .onErrorMap(e -> Constraints.isViolated(e, Subscription.USER_FOREIGN_KEY), e -> new UserNotFoundException(userId))
+                .doOnError(UserNotFoundException.class, e -> logger.error("Пользователь с ID: {} не найден", userId, e))
+                .onErrorMap(DataAccessException.class, e -> {
+                    logger.error("Ошибка при добавлении подписки для пользователя с ID: {}", userId, e);
+                    return new RuntimeException("Ошибка при добавлении подписки", e);
+                });
+    }
+
+    /**
+     * Добавляет пользователю несколько подписок одним запросом.
+     * Повторяющиеся имена сервисов учитываются один раз, для уже существующих
+     * подписок возвращаются их данные без повторной вставки.
+     *
+     * @param userId ID пользователя, для которого добавляются подписки.
+     * @param serviceNames названия сервисов.
+     * @return подписки в порядке названий сервисов.
+     * @throws UserNotFoundException если пользователь с указанным ID не найден.
+     */
+    public Flux<SubscriptionDTO> addSubscriptions(Long userId, List<String> serviceNames) {
+        logger.debug("Пакетное добавление {} подписок для пользователя с ID: {}", serviceNames.size(), userId);
+        Set<String> names = new LinkedHashSet<>(serviceNames);
+        return userRepository.existsById(userId)
+                .flatMap(exists -> exists ? resolveIds(names) : Mono.error(new UserNotFoundException(userId)))
+                .flatMapMany(ids -> {
+                    if (ids.isEmpty()) {
+                        return Flux.empty();
+                    }
+                    Long[] requested = ids.values().toArray(Long[]::new);
+                    Map<Long, String> namesById = new HashMap<>();
+                    ids.forEach((name, id) -> namesById.put(id, name));
+                    return subscriptionRepository.insertMissing(userId, requested)
+                            .collectList()
+                            .doOnNext(inserted -> {
+                                if (inserted.isEmpty()) {
+                                    return;
+                                }
+                                List<InvalidationEvent> changes = new ArrayList<>(inserted.size());
+                                for (SubscriptionRepository.InsertedSubscription subscription : inserted) {
+                                    changes.add(InvalidationEvent.subscriptionAdded(userId, subscription.id(),
+                                            namesById.get(subscription.serviceId()), subscription.createdAt(),
+                                            subscription.transactionId()));
+                                }
+                                invalidationChannel.publish(changes);
+                            })
+                            .thenMany(subscriptionRepository.findDTOsByUserIdAndServiceIds(userId, requested))
+                            .collectMap(SubscriptionDTO::getServiceName)
+                            .flatMapIterable(subscriptionsByName -> names.stream()
+                                    .map(subscriptionsByName::get)
+                                    .filter(Objects::nonNull)
+                                    .toList());
+                })
+                .onErrorMap(e -> Constraints.isViolated(e, Subscription.USER_FOREIGN_KEY), e -> new UserNotFoundException(userId))
+                .doOnError(UserNotFoundException.class, e -> logger.error("Пользователь с ID: {} не найден", userId, e))
+                .onErrorMap(DataAccessException.class, e -> {
+                    logger.error("Ошибка при пакетном добавлении подписок для пользователя с ID: {}", userId, e);
+                    return new RuntimeException("Ошибка при добавлении подписок", e);
+                });
+    }
+
+    /**
+     * Получает подписки указанного пользователя потоком, одним запросом-проекцией;
+     * существование пользователя проверяется дополнительным запросом только при пустом результате.
+     *
+     * @param userId ID пользователя, для которого нужно получить подписки.
+     * @return подписки пользователя, упорядоченные по ID.
+     * @throws UserNotFoundException если пользователь с указанным ID не найден.
+     */
+    public Flux<SubscriptionDTO> getUserSubscriptions(Long userId) {
+        logger.debug("Получение подписок для пользователя с ID: {}", userId);
+        return subscriptionRepository.findDTOsByUserId(userId)
+                .switchIfEmpty(userRepository.existsById(userId)
+                        .flatMapMany(exists -> exists ? Flux.empty() : Flux.error(new UserNotFoundException(userId))))
+                .doOnError(UserNotFoundException.class, e -> logger.error("Пользователь с ID: {} не найден", userId, e))
+                .onErrorMap(DataAccessException.class, e -> {
+                    logger.error("Ошибка при получении подписок для пользователя с ID: {}", userId, e);
+                    return new RuntimeException("Ошибка при получении подписок", e);
+                });
+    }
+
+    /**
+     * Удаляет подписку для указанного пользователя одним условным запросом.
+     *
+     * @param userId ID пользователя, для которого удаляется подписка.
+     * @param subscriptionId ID подписки, которую нужно удалить.
+     * @return завершение удаления.
+     * @throws SubscriptionNotFoundException если подписка с указанным ID не найдена.
+     * @throws SubscriptionNotBelongToUserException если подписка не принадлежит указанному пользователю.
+     */
+    public Mono<Void> deleteSubscription(Long userId, Long subscriptionId) {
+        logger.debug("Удаление подписки с ID: {} для пользователя с ID: {}", subscriptionId, userId);
+        return subscriptionRepository.deleteOwned(subscriptionId, userId)
+                .switchIfEmpty(subscriptionRepository.findUserIdById(subscriptionId)
+                        .hasElement()
+                        .flatMap(exists -> Mono.error(exists
+                                ? new SubscriptionNotBelongToUserException(subscriptionId, userId)
+                                : new SubscriptionNotFoundException("Подписка с ID: " + subscriptionId + " не найдена"))))
+                .doOnNext(deleted -> invalidationChannel.publish(List.of(InvalidationEvent.subscriptionDeleted(
+                        userId, subscriptionId, deleted.serviceName(), deleted.createdAt(), deleted.transactionId()))))
+                .doOnError(e -> e instanceof SubscriptionNotFoundException || e instanceof SubscriptionNotBelongToUserException,
+                        e -> logger.error("Ошибка при удалении подписки с ID: {} для пользователя с ID: {}",
+                                subscriptionId, userId, e))
+                .onErrorMap(DataAccessException.class, e -> {
+                    logger.error("Ошибка при удалении подписки с ID: {} для пользователя с ID: {}", subscriptionId, userId, e);
+                    return new RuntimeException("Ошибка при удалении подписки", e);
+                })
+                .then();
+    }
+
+    /**
+     * Получает популярные подписки по количеству.
+     *
+     * @param limit максимальное количество сервисов в ответе, от 1 до subscription.top.max-limit.
+     * @return названия популярных подписок.
+     * @throws SubscriptionNotFoundException если подписки не найдены.
+     */
+    public Flux<String> getTopSubscriptions(int limit) {
+        logger.debug("Получение {} популярных подписок по количеству", limit);
+        int top = topLimit(limit);
+        return cachedTop(new TopQuery(null, top), () -> subscriptionRepository.findTopServiceNames(top))
+                .switchIfEmpty(Flux.error(() -> new SubscriptionNotFoundException("Подписки не найдены")))
+                .doOnError(SubscriptionNotFoundException.class, e -> logger.error("Подписки не найдены", e));
+    }
+
+    /**
+     * Получает сервисы, на которые чаще всего подписывались за период.
+     * Учитываются подписки, созданные за период и не удаленные к моменту запроса.
+     *
+     * @param window период: 1h, 24h или 7d.
+     * @param limit максимальное количество сервисов в ответе, от 1 до subscription.top.max-limit.
+     * @return названия популярных подписок за период.
+     * @throws UnsupportedWindowException если период не поддерживается.
+     * @throws SubscriptionNotFoundException если за период подписки не найдены.
+     */
+    public Flux<String> getTopSubscriptions(String window, int limit) {
+        logger.debug("Получение {} популярных подписок за период {}", limit, window);
+        int top = topLimit(limit);
+        return Flux.defer(() -> {
+                    PopularityWindow popularityWindow = PopularityWindow.fromValue(window);
+                    return cachedTop(new TopQuery(popularityWindow, top), () -> subscriptionRepository
+                            .findTopServiceNamesCreatedSince(popularityWindow.since(Instant.now()), top));
+                })
+                .switchIfEmpty(Flux.error(() -> new SubscriptionNotFoundException("Подписки за период " + window + " не найдены")))
+                .doOnError(e -> e instanceof UnsupportedWindowException || e instanceof SubscriptionNotFoundException,
+                        e -> logger.error("Ошибка при получении популярных подписок за период {}", window, e));
+    }
+
+    private int topLimit(int limit) {
+        return Math.min(Math.max(limit, 1), maxTopLimit);
+    }
+
+    private Flux<String> cachedTop(TopQuery query, Supplier<Flux<String>> names) {
+        // Отмена одного запроса не отменяет общий расчет, которого ждут другие запросы.
+        return Mono.fromFuture(() -> topServices.get(query, (key, executor) -> names.get().collectList().toFuture()), true)
+                .flatMapIterable(top -> top);
+    }
+
+    private Mono<Map<String, Long>> resolveIds(Set<String> names) {
+        Map<String, Long> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            Long id = serviceIds.getIfPresent(name);
+            if (id != null) {
+                ids.put(name, id);
+            } else {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return Mono.just(ids);
+        }
+        return serviceRepository.resolve(missing.toArray(String[]::new))
+                .collectList()
+                .flatMap(resolved -> {
+                    resolved.forEach(service -> ids.put(service.getServiceName(), service.getId()));
+                    // Сервис, вставленный параллельной транзакцией после начала запроса,
+                    // не виден в его снимке данных и дочитывается отдельно.
+                    String[] unresolved = missing.stream().filter(name -> !ids.containsKey(name)).toArray(String[]::new);
+                    return unresolved.length == 0
+                            ? Mono.just(ids)
+                            : serviceRepository.findAllByServiceNames(unresolved).collectList().map(found -> {
+                                found.forEach(service -> ids.put(service.getServiceName(), service.getId()));
+                                return ids;
+                            });
+                })
+                .doOnNext(resolved -> serviceIds.putAll(resolved));
+    }
+
+    /**
+     * Запрос ТОПа подписок.
+     *
+     * @param window период или null для подписок за все время.
+     * @param limit количество сервисов в ответе.
+     */
+    private record TopQuery(PopularityWindow window, int limit) {
+    }
+}
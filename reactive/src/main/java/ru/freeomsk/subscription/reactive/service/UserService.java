@@ -0,0 +1,197 @@
+package ru.freeomsk.subscription.reactive.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.dto.UserPageDTO;
+import ru.freeomsk.subscription.exception.UserNotFoundException;
+import ru.freeomsk.subscription.reactive.entity.User;
+import ru.freeomsk.subscription.reactive.repository.SubscriptionRepository;
+import ru.freeomsk.subscription.reactive.repository.UserRepository;
+import ru.freeomsk.subscription.service.InvalidationEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реактивный сервис для управления пользователями.
+ * После фиксации изменений публикует их в канал изменений, чтобы узлы основного
+ * приложения сбросили свои кэши.
+ */
+@Service
+public class UserService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+    private static final int MAX_PAGE_SIZE = 1000;
+    private final UserRepository userRepository;
+    private final SubscriptionRepository subscriptionRepository;
+    private final InvalidationChannel invalidationChannel;
+    private final TransactionalOperator transactionalOperator;
+
+    /**
+     * Конструктор для создания экземпляра UserService.
+     *
+     * @param userRepository репозиторий пользователей.
+     * @param subscriptionRepository репозиторий подписок.
+     * @param invalidationChannel канал изменений.
+     * @param transactionalOperator оператор транзакций.
+     */
+    public UserService(UserRepository userRepository, SubscriptionRepository subscriptionRepository,
+                       InvalidationChannel invalidationChannel, TransactionalOperator transactionalOperator) {
+        this.userRepository = userRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.invalidationChannel = invalidationChannel;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    /**
+     * Создает нового пользователя.
+     *
+     * @param userDTO данные пользователя.
+     * @return созданный пользователь.
+     */
+    public Mono<UserDTO> createUser(UserDTO userDTO) {
+        logger.debug("Создание пользователя: {}", userDTO);
+        User user = new User();
+        user.setName(userDTO.getName());
+        user.setEmail(userDTO.getEmail());
+        return userRepository.save(user)
+                .map(createdUser -> {
+                    invalidationChannel.publish(List.of(InvalidationEvent.userChanged(createdUser.getId())));
+                    userDTO.setId(createdUser.getId());
+                    return userDTO;
+                })
+                .onErrorMap(DataAccessException.class, e -> {
+                    logger.error("Ошибка при создании пользователя: {}", userDTO, e);
+                    return new RuntimeException("Ошибка при создании пользователя", e);
+                });
+    }
+
+    /**
+     * Получает пользователя по ID.
+     *
+     * @param id ID пользователя.
+     * @return данные пользователя или пустой результат, если пользователь не найден.
+     */
+    public Mono<UserDTO> getUserById(Long id) {
+        logger.debug("Получение пользователя с ID: {}", id);
+        return userRepository.findById(id)
+                .map(UserService::toDTO)
+                .onErrorMap(DataAccessException.class, e -> {
+                    logger.error("Ошибка при получении пользователя с ID: {}", id, e);
+                    return new RuntimeException("Ошибка при получении пользователя", e);
+                });
+    }
+
+    /**
+     * Обновляет данные пользователя.
+     *
+     * @param id ID пользователя.
+     * @param userDTO новые данные пользователя.
+     * @return обновленный пользователь.
+     * @throws UserNotFoundException если пользователь с указанным ID не найден.
+     */
+    public Mono<UserDTO> updateUser(Long id, UserDTO userDTO) {
+        logger.debug("Обновление пользователя с ID: {}", id);
+        return userRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new UserNotFoundException(id)))
+                .flatMap(user -> {
+                    user.setName(userDTO.getName());
+                    user.setEmail(userDTO.getEmail());
+                    return userRepository.save(user);
+                })
+                .map(updatedUser -> {
+                    invalidationChannel.publish(List.of(InvalidationEvent.userChanged(id)));
+                    userDTO.setId(updatedUser.getId());
+                    return userDTO;
+                })
+                .doOnError(UserNotFoundException.class, e -> logger.error("Пользователь с ID: {} не найден", id, e))
+                .onErrorMap(DataAccessException.class, e -> {
+                    logger.error("Ошибка при обновлении пользователя с ID: {}", id, e);
+                    return new RuntimeException("Ошибка при обновлении пользователя", e);
+                });
+    }
+
+    /**
+     * Удаляет пользователя по ID вместе с его подписками в одной транзакции.
+     * После фиксации транзакции по каждой удаленной подписке публикуется изменение.
+     *
+     * @param id ID пользователя.
+     * @return завершение удаления.
+     * @throws UserNotFoundException если пользователь с указанным ID не найден.
+     */
+    public Mono<Void> deleteUser(Long id) {
+        logger.debug("Удаление пользователя с ID: {}", id);
+        Mono<List<SubscriptionRepository.DeletedSubscription>> delete = subscriptionRepository.deleteAllByUserId(id)
+                .collectList()
+                .flatMap(removed -> userRepository.deleteUserById(id)
+                        .flatMap(count -> count == 0 ? Mono.error(new UserNotFoundException(id)) : Mono.just(removed)));
+        return transactionalOperator.transactional(delete)
+                .doOnNext(removed -> {
+                    List<InvalidationEvent> changes = new ArrayList<>(removed.size() + 1);
+                    for (SubscriptionRepository.DeletedSubscription subscription : removed) {
+                        changes.add(InvalidationEvent.subscriptionDeleted(id, subscription.id(),
+                                subscription.serviceName(), subscription.createdAt(), subscription.transactionId()));
+                    }
+                    changes.add(InvalidationEvent.userDeleted(id));
+                    invalidationChannel.publish(changes);
+                })
+                .doOnError(UserNotFoundException.class, e -> logger.error("Пользователь с ID: {} не найден", id, e))
+                .onErrorMap(DataAccessException.class, e -> {
+                    logger.error("Ошибка при удалении пользователя с ID: {}", id, e);
+                    return new RuntimeException("Ошибка при удалении пользователя", e);
+                })
+                .then();
+    }
+
+    /**
+     * Получает страницу пользователей с использованием курсора по ID.
+     *
+     * @param after ID последнего пользователя предыдущей страницы или null для первой страницы.
+     * @param limit размер страницы, ограничивается диапазоном от 1 до 1000.
+     * @return страница пользователей и курсор для следующей страницы.
+     */
+    public Mono<UserPageDTO> getUsersPage(Long after, int limit) {
+        logger.debug("Получение страницы пользователей после ID: {}, размер: {}", after, limit);
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        long cursor = after == null ? 0L : after;
+        return userRepository.findPageAfter(cursor, pageSize)
+                .collectList()
+                .map(users -> new UserPageDTO(users,
+                        users.size() == pageSize ? users.get(users.size() - 1).getId() : null))
+                .onErrorMap(DataAccessException.class, e -> {
+                    logger.error("Ошибка при получении страницы пользователей после ID: {}", after, e);
+                    return new RuntimeException("Ошибка при получении всех пользователей", e);
+                });
+    }
+
+    /**
+     * Возвращает всех пользователей потоком. Пользователи читаются из базы данных
+     * по мере того, как клиент принимает ответ.
+     *
+     * @return пользователи, упорядоченные по ID.
+     */
+    public Flux<UserDTO> streamAllUsers() {
+        logger.debug("Потоковое получение всех пользователей");
+        return userRepository.streamAll()
+                .onErrorMap(DataAccessException.class, e -> {
+                    logger.error("Ошибка при потоковом получении всех пользователей", e);
+                    return new RuntimeException("Ошибка при получении всех пользователей", e);
+                });
+    }
+
+    /**
+     * Преобразует сущность пользователя в DTO.
+     *
+     * @param user сущность пользователя.
+     * @return данные пользователя.
+     */
+    static UserDTO toDTO(User user) {
+        return new UserDTO(user.getId(), user.getName(), user.getEmail());
+    }
+}
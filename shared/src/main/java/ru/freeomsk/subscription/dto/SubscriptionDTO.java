@@ -8,6 +8,22 @@ public class SubscriptionDTO {
     private String serviceName;
     private Long userId;
 
+    public SubscriptionDTO() {
+    }
+
+    /**
+     * Конструктор для построения DTO напрямую из результата запроса.
+     *
+     * @param id ID подписки.
+     * @param serviceName название сервиса.
+     * @param userId ID пользователя.
+     */
+    public SubscriptionDTO(Long id, String serviceName, Long userId) {
+        this.id = id;
+        this.serviceName = serviceName;
+        this.userId = userId;
+    }
+
     public Long getId() {
         return id;
     }
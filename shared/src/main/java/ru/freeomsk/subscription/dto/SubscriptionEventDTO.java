@@ -0,0 +1,69 @@
+package ru.freeomsk.subscription.dto;
+
+/**
+ * DTO (Data Transfer Object) для передачи события изменения подписки в потоке событий.
+ */
+public class SubscriptionEventDTO {
+
+    /**
+     * Тип изменения подписки.
+     */
+    public enum Type {
+        ADDED, DELETED
+    }
+
+    private Type type;
+    private Long subscriptionId;
+    private String serviceName;
+    private Long userId;
+
+    public SubscriptionEventDTO() {
+    }
+
+    /**
+     * Конструктор для создания события изменения подписки.
+     *
+     * @param type тип изменения.
+     * @param subscriptionId ID подписки.
+     * @param serviceName название сервиса.
+     * @param userId ID пользователя.
+     */
+    public SubscriptionEventDTO(Type type, Long subscriptionId, String serviceName, Long userId) {
+        this.type = type;
+        this.subscriptionId = subscriptionId;
+        this.serviceName = serviceName;
+        this.userId = userId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Long getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public void setSubscriptionId(Long subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+}
@@ -5,6 +5,15 @@ public class UserDTO {
     private String name;
     private String email;
 
+    public UserDTO() {
+    }
+
+    public UserDTO(Long id, String name, String email) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,36 @@
+package ru.freeomsk.subscription.dto;
+
+import java.util.List;
+
+/**
+ * DTO (Data Transfer Object) для передачи страницы пользователей при курсорной пагинации.
+ * Поле nextCursor содержит ID последнего пользователя страницы или null, если страница последняя.
+ */
+public class UserPageDTO {
+    private List<UserDTO> users;
+    private Long nextCursor;
+
+    public UserPageDTO() {
+    }
+
+    public UserPageDTO(List<UserDTO> users, Long nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<UserDTO> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<UserDTO> users) {
+        this.users = users;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.freeomsk.subscription.exception;
+
+/**
+ * Исключение, выбрасываемое, когда операция недоступна в текущей конфигурации приложения.
+ */
+public class OperationNotSupportedException extends RuntimeException {
+
+    /**
+     * Конструктор для создания нового экземпляра OperationNotSupportedException с указанным сообщением.
+     *
+     * @param message сообщение об ошибке.
+     */
+    public OperationNotSupportedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.freeomsk.subscription.exception;
+
+/**
+ * Исключение, выбрасываемое, когда запрошен неподдерживаемый период популярности.
+ */
+public class UnsupportedWindowException extends RuntimeException {
+    /**
+     * Конструктор для создания нового экземпляра UnsupportedWindowException с указанным периодом.
+     *
+     * @param window запрошенный период.
+     */
+    public UnsupportedWindowException(String window) {
+        super("Период: " + window + " не поддерживается, допустимые значения: 1h, 24h, 7d");
+    }
+}
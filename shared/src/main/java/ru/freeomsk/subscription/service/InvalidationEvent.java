@@ -0,0 +1,106 @@
+package ru.freeomsk.subscription.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Изменение данных, которое нужно применить к кэшам в памяти каждого узла.
+ * Передается между узлами в компактном JSON с однобуквенными полями.
+ *
+ * @param type тип изменения.
+ * @param userId ID пользователя.
+ * @param subscriptionId ID подписки для изменений подписок.
+ * @param serviceName название сервиса для изменений подписок.
+ * @param createdAt время создания подписки в секундах эпохи или null, если оно неизвестно.
+ * @param transactionId ID транзакции PostgreSQL ({@code pg_current_xact_id()}), изменившей подписку,
+ * или null, если он неизвестен. По нему перестроение индексов популярности определяет,
+ * учтено ли изменение в прочитанных данных.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record InvalidationEvent(@JsonProperty("t") Type type,
+                                @JsonProperty("u") Long userId,
+                                @JsonProperty("s") Long subscriptionId,
+                                @JsonProperty("n") String serviceName,
+                                @JsonProperty("c") Long createdAt,
+                                @JsonProperty("x") Long transactionId) {
+
+    /**
+     * Тип изменения.
+     */
+    public enum Type {
+        @JsonProperty("uc") USER_CHANGED,
+        @JsonProperty("ud") USER_DELETED,
+        @JsonProperty("sa") SUBSCRIPTION_ADDED,
+        @JsonProperty("sd") SUBSCRIPTION_DELETED
+    }
+
+    /**
+     * Создает событие создания или изменения пользователя.
+     *
+     * @param userId ID пользователя.
+     * @return событие.
+     */
+    public static InvalidationEvent userChanged(Long userId) {
+        return new InvalidationEvent(Type.USER_CHANGED, userId, null, null, null, null);
+    }
+
+    /**
+     * Создает событие удаления пользователя.
+     *
+     * @param userId ID пользователя.
+     * @return событие.
+     */
+    public static InvalidationEvent userDeleted(Long userId) {
+        return new InvalidationEvent(Type.USER_DELETED, userId, null, null, null, null);
+    }
+
+    /**
+     * Создает событие добавления подписки.
+     *
+     * @param userId ID пользователя.
+     * @param subscriptionId ID подписки.
+     * @param serviceName название сервиса.
+     * @param createdAt время создания подписки в секундах эпохи или null.
+     * @param transactionId ID транзакции, добавившей подписку, или null.
+     * @return событие.
+     */
+    public static InvalidationEvent subscriptionAdded(Long userId, Long subscriptionId, String serviceName, Long createdAt,
+                                                  Long transactionId) {
+        return new InvalidationEvent(Type.SUBSCRIPTION_ADDED, userId, subscriptionId, serviceName, createdAt, transactionId);
+    }
+
+    /**
+     * Создает событие удаления подписки.
+     *
+     * @param userId ID пользователя.
+     * @param subscriptionId ID подписки.
+     * @param serviceName название сервиса.
+     * @param createdAt время создания подписки в секундах эпохи или null.
+     * @param transactionId ID транзакции, удалившей подписку, или null.
+     * @return событие.
+     */
+    public static InvalidationEvent subscriptionDeleted(Long userId, Long subscriptionId, String serviceName, Long createdAt,
+                                                  Long transactionId) {
+        return new InvalidationEvent(Type.SUBSCRIPTION_DELETED, userId, subscriptionId, serviceName, createdAt, transactionId);
+    }
+
+    /**
+     * Преобразует время создания подписки из результата запроса в секунды эпохи.
+     *
+     * @param value количество секунд эпохи или null.
+     * @return секунды эпохи или null, если время неизвестно.
+     */
+    static Long epochSecond(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    /**
+     * Преобразует ID транзакции из результата запроса.
+     *
+     * @param value ID транзакции или null.
+     * @return ID транзакции или null, если он неизвестен.
+     */
+    static Long transactionId(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+}
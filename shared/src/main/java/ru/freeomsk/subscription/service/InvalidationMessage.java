@@ -0,0 +1,97 @@
+package ru.freeomsk.subscription.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Уведомление канала изменений PostgreSQL LISTEN/NOTIFY: пакет изменений одного узла
+ * с его порядковым номером. Формат общий для основного приложения и реактивного варианта,
+ * поэтому их узлы получают изменения друг друга.
+ *
+ * @param node ID узла-отправителя.
+ * @param sequence номер уведомления у отправителя, начиная с 1.
+ * @param events изменения в порядке их выполнения.
+ */
+public record InvalidationMessage(@JsonProperty("o") String node,
+                                  @JsonProperty("q") long sequence,
+                                  @JsonProperty("e") List<InvalidationEvent> events) {
+
+    /**
+     * Наибольший размер уведомления в байтах, с запасом до ограничения NOTIFY в 8000 байт.
+     */
+    public static final int MAX_PAYLOAD_BYTES = 7900;
+
+    /**
+     * Наибольшее количество изменений, отправляемых за один проход.
+     */
+    public static final int MAX_BATCH = 1000;
+
+    /**
+     * Разбивает изменения на части, каждая из которых помещается в одно уведомление.
+     *
+     * @param events изменения в порядке их выполнения.
+     * @param objectMapper преобразователь JSON.
+     * @return части в исходном порядке.
+     */
+    public static List<List<InvalidationEvent>> chunks(List<InvalidationEvent> events, ObjectMapper objectMapper) {
+        List<List<InvalidationEvent>> chunks = new ArrayList<>();
+        List<InvalidationEvent> chunk = new ArrayList<>();
+        int size = 0;
+        for (InvalidationEvent event : events) {
+            int eventSize = jsonBytes(event, objectMapper) + 1;
+            if (!chunk.isEmpty() && size + eventSize > MAX_PAYLOAD_BYTES) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                size = 0;
+            }
+            chunk.add(event);
+            size += eventSize;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static int jsonBytes(InvalidationEvent event, ObjectMapper objectMapper) {
+        try {
+            return objectMapper.writeValueAsString(event).getBytes(StandardCharsets.UTF_8).length;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Последние полученные номера уведомлений по узлам-отправителям.
+     */
+    public static final class Sequences {
+
+        private static final Logger logger = LoggerFactory.getLogger(Sequences.class);
+        private final Map<String, Long> lastSequences = new ConcurrentHashMap<>();
+
+        /**
+         * Запоминает номер полученного уведомления.
+         *
+         * @param message полученное уведомление.
+         * @return true, если предшествующие уведомления отправителя пропущены.
+         */
+        public boolean missed(InvalidationMessage message) {
+            Long previous = lastSequences.put(message.node(), message.sequence());
+            boolean missed = previous != null && message.sequence() != previous + 1;
+            if (missed) {
+                logger.warn("Пропущены уведомления узла {}: ожидался номер {}, получен {}",
+                        message.node(), previous + 1, message.sequence());
+            }
+            return missed;
+        }
+    }
+}
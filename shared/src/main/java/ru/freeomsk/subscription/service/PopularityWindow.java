@@ -0,0 +1,73 @@
+package ru.freeomsk.subscription.service;
+
+import ru.freeomsk.subscription.exception.UnsupportedWindowException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Период, за который рассчитывается популярность сервисов.
+ * Граница периода округляется вниз так же, как в агрегатах основного приложения:
+ * до часа для 1h и 24h, до суток для 7d.
+ */
+public enum PopularityWindow {
+
+    HOUR("1h", Duration.ofHours(1), ChronoUnit.HOURS),
+    DAY("24h", Duration.ofDays(1), ChronoUnit.HOURS),
+    WEEK("7d", Duration.ofDays(7), ChronoUnit.DAYS);
+
+    private final String value;
+    private final Duration duration;
+    private final ChronoUnit granularity;
+
+    PopularityWindow(String value, Duration duration, ChronoUnit granularity) {
+        this.value = value;
+        this.duration = duration;
+        this.granularity = granularity;
+    }
+
+    /**
+     * Возвращает обозначение периода в параметре запроса.
+     *
+     * @return обозначение периода.
+     */
+    public String value() {
+        return value;
+    }
+
+    /**
+     * Возвращает длительность периода.
+     *
+     * @return длительность периода.
+     */
+    public Duration duration() {
+        return duration;
+    }
+
+    /**
+     * Возвращает начало периода, заканчивающегося в указанный момент.
+     *
+     * @param now конец периода.
+     * @return начало периода, округленное вниз до часа или суток.
+     */
+    public Instant since(Instant now) {
+        return now.minus(duration).truncatedTo(granularity);
+    }
+
+    /**
+     * Находит период по обозначению из параметра запроса.
+     *
+     * @param value обозначение периода: 1h, 24h или 7d.
+     * @return период.
+     * @throws UnsupportedWindowException если период не поддерживается.
+     */
+    public static PopularityWindow fromValue(String value) {
+        for (PopularityWindow window : values()) {
+            if (window.value.equals(value)) {
+                return window;
+            }
+        }
+        throw new UnsupportedWindowException(value);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.freeomsk.subscription.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.service.SubscriptionService;
+import ru.freeomsk.subscription.service.UserService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Добавление подписок из нескольких потоков на общий небольшой набор сервисов.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class AddSubscriptionBenchmark {
+
+    private static final String[] SERVICES = {
+            "Netflix", "YouTube Premium", "VK Музыка", "Яндекс.Плюс", "Кинопоиск", "Okko", "Spotify", "Apple Music"
+    };
+
+    @State(Scope.Benchmark)
+    public static class Application {
+        BenchmarkEnvironment environment;
+        SubscriptionService subscriptionService;
+        UserService userService;
+        final AtomicLong users = new AtomicLong();
+
+        @Setup
+        public void setUp() {
+            environment = BenchmarkEnvironment.start();
+            subscriptionService = environment.bean(SubscriptionService.class);
+            userService = environment.bean(UserService.class);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            environment.close();
+        }
+
+        Long createUser() {
+            long number = users.incrementAndGet();
+            UserDTO user = new UserDTO();
+            user.setName("Bench User " + number);
+            user.setEmail("bench-" + number + "@example.com");
+            return userService.createUser(user).getId();
+        }
+    }
+
+    /**
+     * Каждый поток подписывает своего пользователя на все сервисы по очереди,
+     * после чего переходит к новому пользователю, чтобы пары не повторялись.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        Long userId;
+        int next = SERVICES.length;
+        SubscriptionDTO subscription;
+
+        @Setup(Level.Invocation)
+        public void nextSubscription(Application application) {
+            if (next == SERVICES.length) {
+                userId = application.createUser();
+                next = 0;
+            }
+            subscription = new SubscriptionDTO();
+            subscription.setServiceName(SERVICES[next++]);
+        }
+    }
+
+    @Benchmark
+    public SubscriptionDTO addSubscription(Application application, Writer writer) {
+        return application.subscriptionService.addSubscription(writer.userId, writer.subscription);
+    }
+}
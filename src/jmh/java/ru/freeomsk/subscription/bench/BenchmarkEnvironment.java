@@ -0,0 +1,67 @@
+package ru.freeomsk.subscription.bench;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.freeomsk.subscription.SubscriptionApplication;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Окружение для бенчмарков: встроенный PostgreSQL и контекст приложения без веб-сервера.
+ * Не требует сети и внешней базы данных.
+ */
+public final class BenchmarkEnvironment implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkEnvironment(EmbeddedPostgres postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    /**
+     * Запускает встроенный PostgreSQL и контекст приложения.
+     *
+     * @param extraArgs дополнительные параметры приложения в формате --key=value.
+     * @return запущенное окружение.
+     */
+    public static BenchmarkEnvironment start(String... extraArgs) {
+        EmbeddedPostgres postgres;
+        try {
+            postgres = EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String[] args = new String[extraArgs.length + 6];
+        args[0] = "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true";
+        args[1] = "--spring.datasource.username=postgres";
+        args[2] = "--spring.datasource.password=";
+        args[3] = "--spring.jpa.show-sql=false";
+        args[4] = "--logging.level.root=WARN";
+        args[5] = "--logging.level.ru.freeomsk.subscription=WARN";
+        System.arraycopy(extraArgs, 0, args, 6, extraArgs.length);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SubscriptionApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+        return new BenchmarkEnvironment(postgres, context);
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public JdbcTemplate jdbc() {
+        return context.getBean(JdbcTemplate.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        postgres.close();
+    }
+}
@@ -0,0 +1,114 @@
+package ru.freeomsk.subscription.bench;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пропускная способность журналирования запроса в трех режимах:
+ * sync - две строки INFO на запрос (контроллер и сервис) с синхронной записью в файл;
+ * async - те же строки через ограниченную неблокирующую очередь;
+ * prod - строки контроллера и сервиса на уровне DEBUG (отключены), одна строка
+ * на каждые 100 запросов через асинхронную очередь, как в профиле prod.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final int SAMPLE_EVERY = 100;
+
+    @Param({"sync", "async", "prod"})
+    private String mode;
+
+    private LoggerContext context;
+    private Logger logger;
+    private Path file;
+    private final AtomicLong requests = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("logging-benchmark", ".log");
+        context = new LoggerContext();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p [%t] %logger{39} : %m%n");
+        encoder.setCharset(StandardCharsets.UTF_8);
+        encoder.start();
+
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setFile(file.toString());
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+
+        Appender<ILoggingEvent> appender = fileAppender;
+        if (!mode.equals("sync")) {
+            AsyncAppender asyncAppender = new AsyncAppender();
+            asyncAppender.setContext(context);
+            asyncAppender.setQueueSize(8192);
+            asyncAppender.setNeverBlock(true);
+            asyncAppender.addAppender(fileAppender);
+            asyncAppender.start();
+            appender = asyncAppender;
+        }
+
+        logger = context.getLogger("ru.freeomsk.subscription.bench");
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.stop();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void logRequest() {
+        long request = requests.incrementAndGet();
+        long userId = request % 10_000;
+        if (mode.equals("prod")) {
+            logger.debug("Получен запрос на получение подписок для пользователя с ID: {}", userId);
+            logger.debug("Получение подписок для пользователя с ID: {}", userId);
+            if (request % SAMPLE_EVERY == 0) {
+                logger.info("Запрос GET /subscriptions/users/{userId} {} завершен со статусом {} за {} мс",
+                        "/subscriptions/users/" + userId, 200, 1);
+            }
+        } else {
+            logger.info("Получен запрос на получение подписок для пользователя с ID: {}", userId);
+            logger.info("Получение подписок для пользователя с ID: {}", userId);
+        }
+    }
+}
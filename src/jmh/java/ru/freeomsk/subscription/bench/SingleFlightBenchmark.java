@@ -0,0 +1,76 @@
+package ru.freeomsk.subscription.bench;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.freeomsk.subscription.service.SingleFlight;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Конкурентные чтения горячих ключей: каждый вызов выполняет собственную загрузку
+ * в сравнении с объединением одновременных загрузок одного ключа.
+ * Загрузка имитирует запрос к базе данных заданной длительности; после итерации
+ * печатается количество фактически выполненных загрузок.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(64)
+@Fork(1)
+public class SingleFlightBenchmark {
+
+    @Param({"1", "16", "1024"})
+    private int keys;
+
+    @Param({"1000"})
+    private long loadMicros;
+
+    private SingleFlight<Integer, Long> singleFlight;
+    private final AtomicLong loads = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        singleFlight = new SingleFlight<>("bench", Duration.ofSeconds(5), new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportLoads() {
+        System.out.printf("%nkeys=%d: загрузок за итерацию %d%n", keys, loads.getAndSet(0));
+    }
+
+    @Benchmark
+    public Long direct() {
+        return load(ThreadLocalRandom.current().nextInt(keys));
+    }
+
+    @Benchmark
+    public Long coalesced() {
+        int key = ThreadLocalRandom.current().nextInt(keys);
+        return singleFlight.execute(key, () -> load(key));
+    }
+
+    private Long load(int key) {
+        loads.incrementAndGet();
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(loadMicros));
+        return (long) key;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.freeomsk.subscription.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.freeomsk.subscription.repository.SubscriptionRepository;
+import ru.freeomsk.subscription.service.ServicePopularityIndex;
+import ru.freeomsk.subscription.service.SubscriptionService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ТОП-N подписок на таблицах от 10^5 до 10^7 строк: ответ из индекса популярности
+ * в сравнении с агрегацией GROUP BY, которая теперь выполняется только при загрузке индекса.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class TopSubscriptionsBenchmark {
+
+    private static final int SERVICES = 20;
+
+    @Param({"100000", "1000000", "10000000"})
+    private int rows;
+
+    private BenchmarkEnvironment environment;
+    private SubscriptionService subscriptionService;
+    private SubscriptionRepository subscriptionRepository;
+
+    @Setup
+    public void setUp() {
+        environment = BenchmarkEnvironment.start();
+        environment.jdbc().update("INSERT INTO services (id, service_name) " +
+                "SELECT nextval('services_seq'), 'service-' || g FROM generate_series(1, ?) g", SERVICES);
+        environment.jdbc().update("INSERT INTO users (name, email) " +
+                "SELECT 'user-' || g, 'user-' || g || '@bench.local' FROM generate_series(1, ?) g", rows / SERVICES);
+        environment.jdbc().update("INSERT INTO subscriptions (id, user_id, service_id) " +
+                "SELECT nextval('subscriptions_seq'), u.id, s.id FROM users u CROSS JOIN services s");
+        environment.jdbc().execute("ANALYZE");
+        environment.bean(ServicePopularityIndex.class).reload();
+        subscriptionService = environment.bean(SubscriptionService.class);
+        subscriptionRepository = environment.bean(SubscriptionRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public List<String> topFromIndex() {
+        return subscriptionService.getTopSubscriptions(10);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Object[]> groupByScan() {
+        return subscriptionRepository.countSubscriptionsByService();
+    }
+}
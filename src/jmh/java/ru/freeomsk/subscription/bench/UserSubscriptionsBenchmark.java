@@ -0,0 +1,73 @@
+package ru.freeomsk.subscription.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.service.SubscriptionService;
+import ru.freeomsk.subscription.service.UserService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение подписок пользователя с 1, 100 и 10 000 подписками.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserSubscriptionsBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"1", "100", "10000"})
+    private int subscriptions;
+
+    private BenchmarkEnvironment environment;
+    private SubscriptionService subscriptionService;
+    private Long userId;
+
+    @Setup
+    public void setUp() {
+        environment = BenchmarkEnvironment.start();
+        subscriptionService = environment.bean(SubscriptionService.class);
+        UserDTO user = new UserDTO();
+        user.setName("Bench User");
+        user.setEmail("bench-" + subscriptions + "@example.com");
+        userId = environment.bean(UserService.class).createUser(user).getId();
+
+        List<String> names = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < subscriptions; i++) {
+            names.add("service-" + i);
+            if (names.size() == BATCH_SIZE || i == subscriptions - 1) {
+                subscriptionService.addSubscriptions(userId, names);
+                names.clear();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public List<SubscriptionDTO> getUserSubscriptions() {
+        return subscriptionService.getUserSubscriptions(userId);
+    }
+}
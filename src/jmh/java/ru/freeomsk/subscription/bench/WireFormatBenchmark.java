@@ -0,0 +1,94 @@
+package ru.freeomsk.subscription.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.dto.UserDTO;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация и десериализация списков DTO в форматах JSON, CBOR и Smile.
+ * Размер сообщения для каждого формата выводится в журнал запуска при подготовке.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<UserDTO>> USERS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<SubscriptionDTO>> SUBSCRIPTIONS = new TypeReference<>() {
+    };
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private ObjectMapper mapper;
+    private List<UserDTO> users;
+    private List<SubscriptionDTO> subscriptions;
+    private byte[] usersPayload;
+    private byte[] subscriptionsPayload;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = switch (format) {
+            case "json" -> new ObjectMapper();
+            case "cbor" -> new CBORMapper();
+            case "smile" -> new SmileMapper();
+            default -> throw new IllegalArgumentException("Неизвестный формат: " + format);
+        };
+        users = new ArrayList<>(size);
+        subscriptions = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            users.add(new UserDTO(i, "User " + i, "user" + i + "@example.com"));
+            subscriptions.add(new SubscriptionDTO(i, "service-" + (i % 20), 1L));
+        }
+        usersPayload = mapper.writeValueAsBytes(users);
+        subscriptionsPayload = mapper.writeValueAsBytes(subscriptions);
+        System.out.printf("%n%s, %d элементов: пользователи %d байт, подписки %d байт%n",
+                format, size, usersPayload.length, subscriptionsPayload.length);
+    }
+
+    @Benchmark
+    public byte[] writeUsers() throws IOException {
+        return mapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] writeSubscriptions() throws IOException {
+        return mapper.writeValueAsBytes(subscriptions);
+    }
+
+    @Benchmark
+    public List<UserDTO> readUsers() throws IOException {
+        return mapper.readValue(usersPayload, USERS);
+    }
+
+    @Benchmark
+    public List<SubscriptionDTO> readSubscriptions() throws IOException {
+        return mapper.readValue(subscriptionsPayload, SUBSCRIPTIONS);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.freeomsk.subscription.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.entity.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование сущностей пользователей в DTO без обращения к базе данных.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserMappingBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private List<User> users;
+
+    @Setup
+    public void setUp() {
+        users = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            User user = new User();
+            user.setId(i);
+            user.setName("User " + i);
+            user.setEmail("user" + i + "@example.com");
+            users.add(user);
+        }
+    }
+
+    @Benchmark
+    public void toDTO(Blackhole blackhole) {
+        for (User user : users) {
+            blackhole.consume(UserService.toDTO(user));
+        }
+    }
+
+    @Benchmark
+    public List<UserDTO> toDTOList() {
+        return users.stream().map(UserService::toDTO).toList();
+    }
+}
@@ -0,0 +1,205 @@
+package ru.freeomsk.subscription.config;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Адаптивное ограничение количества одновременно выполняемых запросов (AIMD).
+ * Пока задержка запросов не превышает целевую, а лимит используется хотя бы наполовину,
+ * лимит растет примерно на единицу за каждые limit завершенных запросов; при превышении
+ * целевой задержки лимит уменьшается в decreaseFactor раз, не чаще одного раза за целевую
+ * задержку. Запросы сверх лимита ждут в коротких очередях отдельно для записи и чтения;
+ * освободившееся место передается ожидающему напрямую, сначала запросам на запись.
+ * Запрос, которому не хватило места в очереди или который не дождался места, отклоняется.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Приоритет запроса.
+     */
+    public enum Priority {
+        WRITE, READ
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Waiter> writers = new ArrayDeque<>();
+    private final Deque<Waiter> readers = new ArrayDeque<>();
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final double decreaseFactor;
+    private final int queueSize;
+    private final long queueTimeoutNanos;
+    private double limit;
+    private int inFlight;
+    private long lastDecrease;
+
+    /**
+     * Конструктор для создания экземпляра AdaptiveConcurrencyLimiter.
+     *
+     * @param initialLimit начальный лимит.
+     * @param minLimit минимальный лимит.
+     * @param maxLimit максимальный лимит.
+     * @param latencyTargetNanos целевая задержка запроса в наносекундах.
+     * @param decreaseFactor множитель уменьшения лимита, от 0 до 1.
+     * @param queueSize размер очереди ожидания для каждого приоритета.
+     * @param queueTimeoutNanos максимальное время ожидания в очереди в наносекундах.
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos,
+                                      double decreaseFactor, int queueSize, long queueTimeoutNanos) {
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.decreaseFactor = decreaseFactor;
+        this.queueSize = queueSize;
+        this.queueTimeoutNanos = queueTimeoutNanos;
+        this.lastDecrease = System.nanoTime();
+    }
+
+    /**
+     * Занимает место для выполнения запроса, при необходимости ожидая в очереди.
+     *
+     * @param priority приоритет запроса.
+     * @return true, если место получено и после выполнения его нужно освободить через {@link #release};
+     * false, если запрос нужно отклонить.
+     * @throws InterruptedException если ожидание прервано.
+     */
+    public boolean tryAcquire(Priority priority) throws InterruptedException {
+        Deque<Waiter> queue = priority == Priority.WRITE ? writers : readers;
+        lock.lock();
+        try {
+            if (inFlight < (int) limit && writers.isEmpty() && (priority == Priority.WRITE || readers.isEmpty())) {
+                inFlight++;
+                return true;
+            }
+            if (queue.size() >= queueSize) {
+                return false;
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            queue.addLast(waiter);
+            long remaining = queueTimeoutNanos;
+            try {
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        queue.remove(waiter);
+                        return false;
+                    }
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    inFlight--;
+                    grantWaiting();
+                } else {
+                    queue.remove(waiter);
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Освобождает место и учитывает задержку завершенного запроса.
+     *
+     * @param latencyNanos задержка запроса в наносекундах или отрицательное значение,
+     *                     если запрос не должен влиять на лимит.
+     */
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            if (latencyNanos >= 0) {
+                adjustLimit(latencyNanos);
+            }
+            inFlight--;
+            grantWaiting();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает текущий лимит.
+     *
+     * @return количество одновременно выполняемых запросов, разрешенное сейчас.
+     */
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает количество выполняющихся запросов.
+     *
+     * @return количество выполняющихся запросов.
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает количество запросов, ожидающих в очереди.
+     *
+     * @param priority приоритет запросов.
+     * @return длина очереди.
+     */
+    public int queued(Priority priority) {
+        lock.lock();
+        try {
+            return priority == Priority.WRITE ? writers.size() : readers.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjustLimit(long latencyNanos) {
+        long now = System.nanoTime();
+        if (latencyNanos > latencyTargetNanos) {
+            if (now - lastDecrease >= latencyTargetNanos) {
+                limit = Math.max(limit * decreaseFactor, minLimit);
+                lastDecrease = now;
+            }
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(limit + 1 / limit, maxLimit);
+        }
+    }
+
+    private void grantWaiting() {
+        while (inFlight < (int) limit) {
+            Waiter waiter = writers.pollFirst();
+            if (waiter == null) {
+                waiter = readers.pollFirst();
+            }
+            if (waiter == null) {
+                return;
+            }
+            waiter.granted = true;
+            inFlight++;
+            waiter.condition.signal();
+        }
+    }
+
+    private static final class Waiter {
+
+        private final Condition condition;
+        private boolean granted;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.freeomsk.subscription.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/**
+ * Конфигурация контроля допуска запросов (subscription.admission.*).
+ * Начальный лимит по умолчанию равен размеру пула соединений: пока задержка
+ * не превышает целевую, лимит может вырасти до max-limit, а при ожидании
+ * соединений задержка растет и лимит снижается.
+ * Отключается свойством subscription.admission.enabled=false.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "subscription.admission.enabled", matchIfMissing = true)
+public class AdmissionControlConfig {
+
+    /**
+     * Фильтр контроля допуска.
+     *
+     * @param initialLimit начальный лимит одновременно выполняемых запросов.
+     * @param minLimit минимальный лимит.
+     * @param maxLimit максимальный лимит.
+     * @param latencyTarget целевая задержка запроса.
+     * @param queueSize размер очереди ожидания для запросов на запись и отдельно для чтения.
+     * @param queueTimeout максимальное время ожидания в очереди.
+     * @param retryAfter значение заголовка Retry-After для отклоненных запросов.
+     * @return фильтр контроля допуска.
+     */
+    @Bean
+    AdmissionControlFilter admissionControlFilter(
+            @Value("${subscription.admission.initial-limit:${spring.datasource.hikari.maximum-pool-size:10}}") int initialLimit,
+            @Value("${subscription.admission.min-limit:2}") int minLimit,
+            @Value("${subscription.admission.max-limit:200}") int maxLimit,
+            @Value("${subscription.admission.latency-target:100ms}") Duration latencyTarget,
+            @Value("${subscription.admission.queue-size:50}") int queueSize,
+            @Value("${subscription.admission.queue-timeout:50ms}") Duration queueTimeout,
+            @Value("${subscription.admission.retry-after:1s}") Duration retryAfter) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit,
+                latencyTarget.toNanos(), 0.9, queueSize, queueTimeout.toNanos());
+        return new AdmissionControlFilter(limiter, Math.max(retryAfter.toSeconds(), 1));
+    }
+
+    /**
+     * Регистрация фильтра контроля допуска для API пользователей и подписок.
+     * Фильтр выполняется сразу после фильтра наблюдения HTTP, поэтому отклоненные
+     * запросы учитываются в метриках http.server.requests, но не расходуют других ресурсов.
+     *
+     * @param filter фильтр контроля допуска.
+     * @return регистрация фильтра.
+     */
+    @Bean
+    FilterRegistrationBean<AdmissionControlFilter> admissionControlFilterRegistration(AdmissionControlFilter filter) {
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/users/*", "/subscriptions/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+}
@@ -0,0 +1,160 @@
+package ru.freeomsk.subscription.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.freeomsk.subscription.config.AdaptiveConcurrencyLimiter.Priority;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Контроль допуска запросов к API пользователей и подписок.
+ * Количество одновременно выполняемых запросов ограничивается {@link AdaptiveConcurrencyLimiter};
+ * запросы на изменение (POST, PUT, PATCH, DELETE) получают место раньше запросов на чтение.
+ * Запрос, не получивший места, сразу завершается ответом 503 с заголовком Retry-After,
+ * не дожидаясь соединения из пула. Поток событий подписок не ограничивается.
+ * Задержка асинхронных запросов не учитывается при подстройке лимита.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private static final Set<String> WRITE_METHODS = Set.of(
+            HttpMethod.POST.name(), HttpMethod.PUT.name(), HttpMethod.PATCH.name(), HttpMethod.DELETE.name());
+    private static final String STREAM_PATH = "/subscriptions/stream";
+    private static final byte[] REJECTED_BODY = "Сервис перегружен, повторите запрос позже".getBytes(StandardCharsets.UTF_8);
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final String retryAfterSeconds;
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+
+    /**
+     * Конструктор для создания экземпляра AdmissionControlFilter.
+     *
+     * @param limiter ограничение количества одновременно выполняемых запросов.
+     * @param retryAfterSeconds значение заголовка Retry-After в секундах.
+     */
+    public AdmissionControlFilter(AdaptiveConcurrencyLimiter limiter, long retryAfterSeconds) {
+        this.limiter = limiter;
+        this.retryAfterSeconds = Long.toString(retryAfterSeconds);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return STREAM_PATH.equals(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Priority priority = WRITE_METHODS.contains(request.getMethod()) ? Priority.WRITE : Priority.READ;
+        boolean admitted;
+        try {
+            admitted = limiter.tryAcquire(priority);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            reject(priority, response);
+            return;
+        }
+
+        long started = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(released));
+            } else if (released.compareAndSet(false, true)) {
+                limiter.release(System.nanoTime() - started);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("subscription.admission.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Текущий лимит одновременно выполняемых запросов")
+                .register(registry);
+        Gauge.builder("subscription.admission.in_flight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                .description("Количество выполняющихся запросов")
+                .register(registry);
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("subscription.admission.queued", limiter, l -> l.queued(priority))
+                    .description("Количество запросов в очереди ожидания")
+                    .tag("priority", tag)
+                    .register(registry);
+            rejected.put(priority, Counter.builder("subscription.admission.rejected")
+                    .description("Количество отклоненных запросов")
+                    .tag("priority", tag)
+                    .register(registry));
+        }
+    }
+
+    private void reject(Priority priority, HttpServletResponse response) throws IOException {
+        Counter counter = rejected.get(priority);
+        if (counter != null) {
+            counter.increment();
+        }
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentLength(REJECTED_BODY.length);
+        response.getOutputStream().write(REJECTED_BODY);
+    }
+
+    private final class ReleasingListener implements AsyncListener {
+
+        private final AtomicBoolean released;
+
+        private ReleasingListener(AtomicBoolean released) {
+            this.released = released;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(-1);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ru.freeomsk.subscription.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Конфигурация чтения с реплик (subscription.replicas.urls).
+ * Основной пул строится из свойств spring.datasource и используется Flyway,
+ * пулы реплик наследуют его настройки с другим адресом. Приложение работает
+ * через LazyConnectionDataSourceProxy над {@link ReplicaRoutingDataSource}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "subscription.replicas.urls")
+public class ReplicaRoutingConfig {
+
+    /**
+     * Пул соединений основного узла.
+     *
+     * @param properties свойства spring.datasource.
+     * @return пул соединений основного узла.
+     */
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Маршрутизирующий источник данных с пулами реплик.
+     *
+     * @param primaryDataSource источник данных основного узла.
+     * @param urls адреса JDBC реплик.
+     * @param connectionTimeout время ожидания соединения с репликой.
+     * @param markdown время исключения недоступной реплики.
+     * @param meterRegistry реестр метрик для пулов реплик.
+     * @param environment окружение приложения.
+     * @return маршрутизирующий источник данных.
+     * @throws SQLException если не удалось получить настройки основного пула.
+     */
+    @Bean
+    ReplicaRoutingDataSource replicaRoutingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                      @Value("${subscription.replicas.urls}") List<String> urls,
+                                                      @Value("${subscription.replicas.connection-timeout:1s}") Duration connectionTimeout,
+                                                      @Value("${subscription.replicas.markdown:30s}") Duration markdown,
+                                                      ObjectProvider<MeterRegistry> meterRegistry,
+                                                      Environment environment) throws SQLException {
+        HikariDataSource primaryPool = primaryDataSource.unwrap(HikariDataSource.class);
+        boolean virtualThreads = Threading.VIRTUAL.isActive(environment);
+        List<HikariDataSource> pools = new ArrayList<>(urls.size());
+        List<DataSource> dataSources = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            HikariDataSource pool = new HikariDataSource();
+            primaryPool.copyStateTo(pool);
+            pool.setJdbcUrl(url);
+            pool.setPoolName("replica-" + (pools.size() + 1));
+            pool.setConnectionTimeout(connectionTimeout.toMillis());
+            // Недоступная при старте реплика не должна мешать запуску приложения.
+            pool.setInitializationFailTimeout(-1);
+            meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            pools.add(pool);
+            dataSources.add(virtualThreads
+                    ? new ConnectionPermitDataSource(pool, pool.getMaximumPoolSize(), pool.getConnectionTimeout())
+                    : pool);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, pools, dataSources, markdown.toMillis());
+    }
+
+    /**
+     * Источник данных приложения. Соединение запрашивается при первом обращении к нему,
+     * когда признак транзакции только для чтения уже установлен.
+     *
+     * @param replicaRoutingDataSource маршрутизирующий источник данных.
+     * @return ленивый прокси источника данных.
+     */
+    @Bean
+    @Primary
+    DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,134 @@
+package ru.freeomsk.subscription.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Источник данных, направляющий соединения транзакций только для чтения на реплики.
+ * Реплики выбираются по кругу; реплика, не выдавшая соединение, исключается
+ * на заданное время, а запрос переходит к следующей реплике или к основному узлу.
+ * Все остальные соединения, а также соединения внутри {@link #onPrimary(Supplier)},
+ * выдаются основным узлом. Должен использоваться за LazyConnectionDataSourceProxy,
+ * чтобы признак транзакции только для чтения был известен к моменту получения соединения.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final ThreadLocal<Boolean> PRIMARY_PINNED = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long markdownNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Конструктор для создания экземпляра ReplicaRoutingDataSource.
+     *
+     * @param primary источник данных основного узла.
+     * @param replicas пулы соединений реплик.
+     * @param replicaDataSources источники данных реплик в том же порядке, что и пулы.
+     * @param markdownMillis время исключения недоступной реплики в миллисекундах.
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicas,
+                                    List<DataSource> replicaDataSources, long markdownMillis) {
+        this.primary = primary;
+        this.replicas = IntStream.range(0, replicas.size())
+                .mapToObj(i -> new Replica(replicas.get(i), replicaDataSources.get(i)))
+                .toList();
+        this.markdownNanos = TimeUnit.MILLISECONDS.toNanos(markdownMillis);
+    }
+
+    /**
+     * Выполняет действие так, что все соединения, полученные в текущем потоке,
+     * выдаются основным узлом, в том числе для транзакций только для чтения.
+     *
+     * @param action действие.
+     * @param <T> тип результата.
+     * @return результат действия.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = PRIMARY_PINNED.get();
+        PRIMARY_PINNED.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_PINNED.remove();
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && PRIMARY_PINNED.get() == null) {
+            Connection connection = replicaConnection();
+            if (connection != null) {
+                return connection;
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    private Connection replicaConnection() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.isAvailable()) {
+                continue;
+            }
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.markDown(markdownNanos);
+                logger.warn("Реплика {} недоступна и исключена на {} мс",
+                        replica.pool.getPoolName(), TimeUnit.NANOSECONDS.toMillis(markdownNanos), e);
+            }
+        }
+        return null;
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource pool;
+        private final DataSource dataSource;
+        private volatile boolean down;
+        private volatile long downUntil;
+
+        private Replica(HikariDataSource pool, DataSource dataSource) {
+            this.pool = pool;
+            this.dataSource = dataSource;
+        }
+
+        private boolean isAvailable() {
+            return !down || System.nanoTime() - downUntil >= 0;
+        }
+
+        private void markDown(long durationNanos) {
+            downUntil = System.nanoTime() + durationNanos;
+            down = true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ru.freeomsk.subscription.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Журналирование запросов с выборкой по эндпоинтам.
+ * Для каждого шаблона пути записывается каждый N-й успешный запрос;
+ * запросы, завершившиеся исключением или статусом 5xx, записываются всегда.
+ */
+public class RequestLogSamplingInterceptor implements HandlerInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestLogSamplingInterceptor.class);
+    private static final String START_ATTRIBUTE = RequestLogSamplingInterceptor.class.getName() + ".start";
+
+    private final int sampleEvery;
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор для создания экземпляра RequestLogSamplingInterceptor.
+     *
+     * @param sampleEvery интервал выборки: записывается каждый N-й запрос к эндпоинту.
+     */
+    public RequestLogSamplingInterceptor(int sampleEvery) {
+        this.sampleEvery = Math.max(sampleEvery, 1);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        int status = response.getStatus();
+        boolean failed = ex != null || status >= 500;
+        if (!failed && !logger.isInfoEnabled()) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String endpoint = request.getMethod() + " " + (pattern != null ? pattern : "<unmapped>");
+        if (!failed && counters.computeIfAbsent(endpoint, key -> new AtomicLong()).getAndIncrement() % sampleEvery != 0) {
+            return;
+        }
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        long elapsedMillis = start instanceof Long startNanos
+                ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) : -1;
+        if (failed) {
+            logger.warn("Запрос {} {} завершен со статусом {} за {} мс",
+                    endpoint, request.getRequestURI(), status, elapsedMillis, ex);
+        } else {
+            logger.info("Запрос {} {} завершен со статусом {} за {} мс",
+                    endpoint, request.getRequestURI(), status, elapsedMillis);
+        }
+    }
+}
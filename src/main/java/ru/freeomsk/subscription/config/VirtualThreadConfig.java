@@ -0,0 +1,42 @@
+package ru.freeomsk.subscription.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Конфигурация режима виртуальных потоков (spring.threads.virtual.enabled=true).
+ * Обработка запросов Tomcat и асинхронные задачи Spring выполняются на виртуальных потоках,
+ * а получение соединений из каждого пула Hikari ограничивается справедливым семафором.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    /**
+     * Оборачивает каждый пул Hikari в {@link ConnectionPermitDataSource}.
+     * Количество разрешений по умолчанию равно размеру пула.
+     *
+     * @param environment окружение приложения.
+     * @return постобработчик бинов источников данных.
+     */
+    @Bean
+    static BeanPostProcessor connectionPermitPostProcessor(Environment environment) {
+        Integer permits = environment.getProperty("subscription.datasource.connection-permits", Integer.class);
+        long acquireTimeout = environment.getProperty("spring.datasource.hikari.connection-timeout", Long.class, 30_000L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    int poolPermits = permits != null ? permits : dataSource.getMaximumPoolSize();
+                    return new ConnectionPermitDataSource(dataSource, poolPermits, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
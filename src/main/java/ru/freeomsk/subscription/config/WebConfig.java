@@ -0,0 +1,29 @@
+package ru.freeomsk.subscription.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Конфигурация Spring MVC: журналирование запросов с выборкой.
+ */
+@Configuration(proxyBeanMethods = false)
+public class WebConfig implements WebMvcConfigurer {
+
+    private final int requestSampleEvery;
+
+    /**
+     * Конструктор для создания экземпляра WebConfig.
+     *
+     * @param requestSampleEvery интервал выборки журнала запросов по каждому эндпоинту.
+     */
+    public WebConfig(@Value("${subscription.logging.request-sample-every:1}") int requestSampleEvery) {
+        this.requestSampleEvery = requestSampleEvery;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RequestLogSamplingInterceptor(requestSampleEvery));
+    }
+}
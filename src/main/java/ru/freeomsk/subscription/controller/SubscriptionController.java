@@ -3,18 +3,26 @@ package ru.freeomsk.subscription.controller;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.service.SubscriptionEventStream;
 import ru.freeomsk.subscription.service.SubscriptionService;
 
 import jakarta.validation.Valid;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -26,14 +34,17 @@ public class SubscriptionController {
 
     private static final Logger logger = LoggerFactory.getLogger(SubscriptionController.class);
     private final SubscriptionService subscriptionService;
+    private final SubscriptionEventStream eventStream;
 
     /**
      * Конструктор для создания нового экземпляра SubscriptionController с заданным сервисом.
      *
      * @param subscriptionService сервис подписок.
+     * @param eventStream поток событий изменения подписок.
      */
-    public SubscriptionController(SubscriptionService subscriptionService) {
+    public SubscriptionController(SubscriptionService subscriptionService, SubscriptionEventStream eventStream) {
         this.subscriptionService = subscriptionService;
+        this.eventStream = eventStream;
     }
 
     /**
@@ -46,20 +57,39 @@ public class SubscriptionController {
     @PostMapping("/users/{userId}")
     @ResponseStatus(HttpStatus.CREATED)
     public SubscriptionDTO addSubscription(@PathVariable Long userId, @Valid @RequestBody SubscriptionDTO subscriptionDTO) {
-        logger.info("Получен запрос на добавление подписки для пользователя с ID: {}", userId);
+        logger.debug("Получен запрос на добавление подписки для пользователя с ID: {}", userId);
         return subscriptionService.addSubscription(userId, subscriptionDTO);
     }
 
+    /**
+     * POST /users/{userId}/batch : Добавить пользователю несколько подписок за один запрос.
+     *
+     * @param userId ID пользователя.
+     * @param serviceNames названия сервисов.
+     * @return созданные подписки.
+     */
+    @PostMapping("/users/{userId}/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<SubscriptionDTO> addSubscriptions(@PathVariable Long userId, @RequestBody List<String> serviceNames) {
+        logger.debug("Получен запрос на пакетное добавление подписок для пользователя с ID: {}", userId);
+        return subscriptionService.addSubscriptions(userId, serviceNames);
+    }
+
     /**
      * GET /users/{userId} : Получить все подписки пользователя.
+     * Ответ содержит ETag с версией подписок; при совпадении с If-None-Match
+     * возвращается 304 Not Modified без обращения к базе данных.
      *
      * @param userId ID пользователя.
-     * @return список подписок пользователя.
+     * @param request текущий запрос для проверки If-None-Match.
+     * @return список подписок пользователя или null, если данные не изменились.
      */
     @GetMapping("/users/{userId}")
-    @ResponseStatus(HttpStatus.OK)
-    public List<SubscriptionDTO> getUserSubscriptions(@PathVariable Long userId) {
-        logger.info("Получен запрос на получение подписок для пользователя с ID: {}", userId);
+    public List<SubscriptionDTO> getUserSubscriptions(@PathVariable Long userId, WebRequest request) {
+        logger.debug("Получен запрос на получение подписок для пользователя с ID: {}", userId);
+        if (request.checkNotModified(subscriptionService.getUserSubscriptionsVersion(userId))) {
+            return null;
+        }
         return subscriptionService.getUserSubscriptions(userId);
     }
 
@@ -72,19 +102,49 @@ public class SubscriptionController {
     @DeleteMapping("{subscriptionId}/users/{userId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteSubscription(@PathVariable Long userId, @PathVariable Long subscriptionId) {
-        logger.info("Получен запрос на удаление подписки с ID: {} для пользователя с ID: {}", subscriptionId, userId);
+        logger.debug("Получен запрос на удаление подписки с ID: {} для пользователя с ID: {}", subscriptionId, userId);
         subscriptionService.deleteSubscription(userId, subscriptionId);
     }
 
     /**
-     * GET /top : Получить ТОП-3 подписок по количеству.
+     * GET /top : Получить ТОП-N подписок по количеству.
+     * С параметром window учитываются только подписки, созданные за период.
+     * Ответ содержит ETag, вычисленный по содержимому списка; при совпадении
+     * с If-None-Match возвращается 304 Not Modified без тела.
      *
-     * @return список названий сервисов топовых подписок.
+     * @param limit количество сервисов в ответе (по умолчанию 3).
+     * @param window период: 1h, 24h или 7d (необязательно, по умолчанию за все время).
+     * @param request текущий запрос для проверки If-None-Match.
+     * @return список названий сервисов топовых подписок или null, если список не изменился.
      */
     @GetMapping("/top")
-    @ResponseStatus(HttpStatus.OK)
-    public List<String> getTopSubscriptions() {
-        logger.info("Получен запрос на получение популярных подписок");
-        return subscriptionService.getTopSubscriptions();
+    public List<String> getTopSubscriptions(@RequestParam(defaultValue = "3") int limit,
+                                            @RequestParam(required = false) String window, WebRequest request) {
+        logger.debug("Получен запрос на получение {} популярных подписок", limit);
+        List<String> top = window == null
+                ? subscriptionService.getTopSubscriptions(limit)
+                : subscriptionService.getTopSubscriptions(window, limit);
+        String etag = DigestUtils.md5DigestAsHex(String.join("\n", top).getBytes(StandardCharsets.UTF_8));
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return top;
+    }
+
+    /**
+     * GET /stream : Получить поток событий добавления и удаления подписок (Server-Sent Events).
+     * С заголовком Last-Event-ID поток продолжается после указанного события.
+     *
+     * @param userId ID пользователя для фильтрации событий (необязательно).
+     * @param serviceName название сервиса для фильтрации событий (необязательно).
+     * @param lastEventId ID последнего полученного события (необязательно).
+     * @return поток событий.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSubscriptionEvents(@RequestParam(required = false) Long userId,
+                                               @RequestParam(required = false) String serviceName,
+                                               @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        logger.debug("Получен запрос на подключение к потоку событий подписок");
+        return eventStream.subscribe(userId, serviceName, lastEventId);
     }
 }
\ No newline at end of file
@@ -1,22 +1,35 @@
 package ru.freeomsk.subscription.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.freeomsk.subscription.dto.ImportResultDTO;
 import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.dto.UserPageDTO;
+import ru.freeomsk.subscription.service.UserImportService;
 import ru.freeomsk.subscription.service.UserService;
 
 import jakarta.validation.Valid;
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 @RestController
 @RequestMapping("/users")
@@ -24,22 +37,33 @@ public class UserController {
 
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
     private final UserService userService;
+    private final UserImportService userImportService;
+    private final ObjectMapper objectMapper;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserImportService userImportService, ObjectMapper objectMapper) {
         this.userService = userService;
+        this.userImportService = userImportService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public UserDTO createUser(@Valid @RequestBody UserDTO userDTO) {
-        logger.info("Получен запрос на создание пользователя: {}", userDTO);
+        logger.debug("Получен запрос на создание пользователя: {}", userDTO);
         return userService.createUser(userDTO);
     }
 
+    @PostMapping(path = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.OK)
+    public ImportResultDTO importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) {
+        logger.debug("Получен запрос на импорт пользователей в формате: {}", contentType);
+        return userImportService.importUsers(body, MediaType.parseMediaType(contentType));
+    }
+
     @GetMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     public UserDTO getUserById(@PathVariable Long id) {
-        logger.info("Получен запрос на получение пользователя с ID: {}", id);
+        logger.debug("Получен запрос на получение пользователя с ID: {}", id);
         return userService.getUserById(id)
                 .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
     }
@@ -47,21 +71,38 @@ public class UserController {
     @PutMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     public UserDTO updateUser(@PathVariable Long id, @Valid @RequestBody UserDTO userDTO) {
-        logger.info("Получен запрос на обновление пользователя с ID: {}", id);
+        logger.debug("Получен запрос на обновление пользователя с ID: {}", id);
         return userService.updateUser(id, userDTO);
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteUser(@PathVariable Long id) {
-        logger.info("Получен запрос на удаление пользователя с ID: {}", id);
+        logger.debug("Получен запрос на удаление пользователя с ID: {}", id);
         userService.deleteUser(id);
     }
 
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
-    public List<UserDTO> getAllUsers() {
-        logger.info("Получен запрос на получение всех пользователей");
-        return userService.getAllUsers();
+    public UserPageDTO getAllUsers(@RequestParam(required = false) Long after,
+                                   @RequestParam(defaultValue = "100") int limit) {
+        logger.debug("Получен запрос на получение пользователей после ID: {}", after);
+        return userService.getUsersPage(after, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        logger.debug("Получен запрос на потоковое получение всех пользователей");
+        StreamingResponseBody body = out -> userService.streamAllUsers(user -> writeLine(out, user));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private void writeLine(OutputStream out, UserDTO user) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(user));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
\ No newline at end of file
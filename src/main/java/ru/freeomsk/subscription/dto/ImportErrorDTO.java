@@ -0,0 +1,33 @@
+package ru.freeomsk.subscription.dto;
+
+/**
+ * DTO (Data Transfer Object) для передачи ошибки импорта отдельной строки.
+ */
+public class ImportErrorDTO {
+    private long line;
+    private String reason;
+
+    public ImportErrorDTO() {
+    }
+
+    public ImportErrorDTO(long line, String reason) {
+        this.line = line;
+        this.reason = reason;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public void setLine(long line) {
+        this.line = line;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
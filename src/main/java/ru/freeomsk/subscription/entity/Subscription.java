@@ -1,41 +1,68 @@
 package ru.freeomsk.subscription.entity;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import ru.freeomsk.subscription.sharding.ShardedId;
+
+import java.time.Instant;
 
 /**
  * Представляет сущность подписки в системе подписок.
  * Этот класс сопоставлен с таблицей "subscriptions" в базе данных.
- * Каждая подписка связана с пользователем и сервисом.
+ * Каждая подписка связана с пользователем и сервисом; пользователь может
+ * быть подписан на каждый сервис не более одного раза.
  */
 @Setter
 @Getter
 @NoArgsConstructor
 @Entity
-@Table(name = "subscriptions")
+@Table(name = "subscriptions",
+        uniqueConstraints = @UniqueConstraint(name = Subscription.USER_SERVICE_CONSTRAINT,
+                columnNames = {"user_id", "service_id"}),
+        indexes = {
+                @Index(name = "idx_subscriptions_service_id", columnList = "service_id"),
+                @Index(name = "idx_subscriptions_created_at", columnList = "created_at")
+        })
 public class Subscription {
 
+    /**
+     * Имя ограничения уникальности пары пользователь-сервис.
+     */
+    public static final String USER_SERVICE_CONSTRAINT = "uk_subscriptions_user_service";
+
+    /**
+     * Имя внешнего ключа на таблицу пользователей.
+     */
+    public static final String USER_FOREIGN_KEY = "fk_subscriptions_user";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @ShardedId(sequence = "subscriptions_seq")
     private Long id;
 
     @NotNull
     @ManyToOne
-    @JoinColumn(name = "service_id", nullable = false)
+    @JoinColumn(name = "service_id", nullable = false, foreignKey = @ForeignKey(name = "fk_subscriptions_service"))
     private NameService nameService;
 
     @NotNull
     @ManyToOne
-    @JoinColumn(name = "user_id", nullable = false)
+    @JoinColumn(name = "user_id", nullable = false, foreignKey = @ForeignKey(name = USER_FOREIGN_KEY))
     private User user;
 
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package ru.freeomsk.subscription.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -48,6 +49,44 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
 
+    /**
+     * Обрабатывает исключение UnsupportedWindowException.
+     *
+     * @param ex исключение UnsupportedWindowException.
+     * @return ответ с HTTP статусом 400 и сообщением об ошибке.
+     */
+    @ExceptionHandler(UnsupportedWindowException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<String> handleUnsupportedWindowException(UnsupportedWindowException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    /**
+     * Обрабатывает исключение LoadTimeoutException.
+     *
+     * @param ex исключение LoadTimeoutException.
+     * @return ответ с HTTP статусом 503, заголовком Retry-After и сообщением об ошибке.
+     */
+    @ExceptionHandler(LoadTimeoutException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<String> handleLoadTimeoutException(LoadTimeoutException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ex.getMessage());
+    }
+
+    /**
+     * Обрабатывает исключение OperationNotSupportedException.
+     *
+     * @param ex исключение OperationNotSupportedException.
+     * @return ответ с HTTP статусом 501 и сообщением об ошибке.
+     */
+    @ExceptionHandler(OperationNotSupportedException.class)
+    @ResponseStatus(HttpStatus.NOT_IMPLEMENTED)
+    public ResponseEntity<String> handleOperationNotSupportedException(OperationNotSupportedException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(ex.getMessage());
+    }
+
     /**
      * Обрабатывает все остальные исключения.
      *
@@ -0,0 +1,15 @@
+package ru.freeomsk.subscription.exception;
+
+/**
+ * Исключение, выбрасываемое, когда объединенная загрузка данных не завершилась за время ожидания.
+ */
+public class LoadTimeoutException extends RuntimeException {
+    /**
+     * Конструктор для создания нового экземпляра LoadTimeoutException с указанной причиной.
+     *
+     * @param cause причина прерывания ожидания.
+     */
+    public LoadTimeoutException(Throwable cause) {
+        super("Превышено время ожидания загрузки данных", cause);
+    }
+}
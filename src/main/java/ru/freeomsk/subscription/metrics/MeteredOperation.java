@@ -0,0 +1,22 @@
+package ru.freeomsk.subscription.metrics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Помечает метод сервиса, время выполнения которого записывается в таймер
+ * subscription.service.operation с тегами operation и outcome.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MeteredOperation {
+
+    /**
+     * Название операции, например "subscription.add".
+     */
+    String value();
+}
@@ -0,0 +1,107 @@
+package ru.freeomsk.subscription.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.freeomsk.subscription.exception.LoadTimeoutException;
+import ru.freeomsk.subscription.exception.SubscriptionNotBelongToUserException;
+import ru.freeomsk.subscription.exception.SubscriptionNotFoundException;
+import ru.freeomsk.subscription.exception.UnsupportedWindowException;
+import ru.freeomsk.subscription.exception.UserNotFoundException;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Аспект, записывающий время выполнения методов, помеченных {@link MeteredOperation}.
+ * Результат операции определяется по возвращенному значению или исключению:
+ * ok, not_found, not_belong, bad_request, timeout, db_error или error.
+ * Таймеры создаются один раз на пару (операция, результат) и переиспользуются,
+ * поэтому на каждом вызове нет поиска в реестре метрик.
+ * Аспект выполняется снаружи транзакции, поэтому время фиксации также учитывается.
+ */
+@Aspect
+@Component
+@Order(0)
+public class ServiceOperationMetricsAspect {
+
+    private static final String TIMER_NAME = "subscription.service.operation";
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор для создания экземпляра ServiceOperationMetricsAspect.
+     *
+     * @param registry реестр метрик.
+     */
+    public ServiceOperationMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Выполняет помеченный метод и записывает время от входа в метод до возврата значения
+     * или выброса исключения в таймер subscription.service.operation с тегами operation
+     * (имя из {@link MeteredOperation#value()}) и outcome (результат операции).
+     * Пустой Optional считается результатом not_found; исключение пробрасывается дальше без изменений.
+     *
+     * @param joinPoint вызов помеченного метода.
+     * @param operation аннотация метода с именем операции.
+     * @return значение, возвращенное методом.
+     * @throws Throwable исключение, выброшенное методом.
+     */
+    @Around("@annotation(operation)")
+    public Object record(ProceedingJoinPoint joinPoint, MeteredOperation operation) throws Throwable {
+        long started = System.nanoTime();
+        String outcome = "ok";
+        try {
+            Object result = joinPoint.proceed();
+            if (result instanceof Optional<?> optional && optional.isEmpty()) {
+                outcome = "not_found";
+            }
+            return result;
+        } catch (Throwable e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            timer(operation.value(), outcome).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return timers.computeIfAbsent(operation + '|' + outcome, key -> Timer.builder(TIMER_NAME)
+                .description("Время выполнения операций сервисного слоя")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private static String outcomeOf(Throwable e) {
+        if (e instanceof UserNotFoundException || e instanceof SubscriptionNotFoundException) {
+            return "not_found";
+        }
+        if (e instanceof SubscriptionNotBelongToUserException) {
+            return "not_belong";
+        }
+        if (e instanceof UnsupportedWindowException) {
+            return "bad_request";
+        }
+        if (e instanceof LoadTimeoutException) {
+            return "timeout";
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessException) {
+                return "db_error";
+            }
+        }
+        return "error";
+    }
+}
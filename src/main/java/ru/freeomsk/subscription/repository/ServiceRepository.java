@@ -12,7 +12,7 @@ import java.util.Optional;
  * предоставляя методы для выполнения операций CRUD и запросов к базе данных.
  */
 @Repository
-public interface ServiceRepository extends JpaRepository<NameService, Long> {
+public interface ServiceRepository extends JpaRepository<NameService, Long>, ServiceUpsertRepository {
     /**
      * Находит сервис по его имени.
      *
@@ -0,0 +1,18 @@
+package ru.freeomsk.subscription.repository;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Дополнительные операции репозитория сервисов, выполняемые напрямую через JDBC.
+ */
+public interface ServiceUpsertRepository {
+
+    /**
+     * Находит или создает сервисы с указанными именами за одно обращение к базе данных.
+     *
+     * @param serviceNames имена сервисов.
+     * @return отображение имени сервиса на его ID для всех переданных имен.
+     */
+    Map<String, Long> resolveServiceIds(Collection<String> serviceNames);
+}
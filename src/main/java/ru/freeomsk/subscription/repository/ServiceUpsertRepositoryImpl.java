@@ -0,0 +1,96 @@
+package ru.freeomsk.subscription.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.freeomsk.subscription.sharding.Shards;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Реализация {@link ServiceUpsertRepository} на основе {@link JdbcTemplate}.
+ * Вставка новых сервисов и чтение существующих выполняются одним SQL-запросом
+ * с INSERT ... ON CONFLICT DO NOTHING в общем табличном выражении.
+ */
+public class ServiceUpsertRepositoryImpl implements ServiceUpsertRepository {
+
+    private static final String RESOLVE_SQL =
+            "WITH input (service_name) AS (SELECT DISTINCT unnest(?::text[])), " +
+            "inserted AS (" +
+            "INSERT INTO services (id, service_name) " +
+            "SELECT nextval('services_seq'), service_name FROM input " +
+            "ON CONFLICT (service_name) DO NOTHING " +
+            "RETURNING id, service_name) " +
+            "SELECT id, service_name FROM inserted " +
+            "UNION ALL " +
+            "SELECT s.id, s.service_name FROM services s JOIN input i ON i.service_name = s.service_name";
+
+    private static final String SELECT_SQL =
+            "SELECT id, service_name FROM services WHERE service_name = ANY (?::text[])";
+
+    private static final String REPLICATE_SQL =
+            "INSERT INTO services (id, service_name) " +
+            "SELECT * FROM unnest(?::bigint[], ?::text[]) " +
+            "ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+
+    /**
+     * Конструктор для создания экземпляра ServiceUpsertRepositoryImpl.
+     *
+     * @param jdbcTemplate шаблон JDBC для запросов к сервисам.
+     * @param shards шарды пользователей.
+     */
+    public ServiceUpsertRepositoryImpl(JdbcTemplate jdbcTemplate, Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+    }
+
+    /**
+     * {@inheritDoc}
+     * При шардировании сервисы создаются в шарде 0 и копируются с теми же ID во все остальные шарды.
+     */
+    @Override
+    public Map<String, Long> resolveServiceIds(Collection<String> serviceNames) {
+        Map<String, Long> ids = new HashMap<>();
+        if (serviceNames.isEmpty()) {
+            return ids;
+        }
+        shards.onShard(0, () -> {
+            query(RESOLVE_SQL, serviceNames, ids);
+            // Сервис, вставленный параллельной транзакцией после начала запроса,
+            // не виден в его снимке данных и дочитывается отдельно.
+            List<String> missing = serviceNames.stream().filter(name -> !ids.containsKey(name)).toList();
+            if (!missing.isEmpty()) {
+                query(SELECT_SQL, missing, ids);
+            }
+            return null;
+        });
+        for (int shard = 1; shard < shards.count(); shard++) {
+            shards.onShard(shard, () -> replicate(ids));
+        }
+        return ids;
+    }
+
+    private int replicate(Map<String, Long> ids) {
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(REPLICATE_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", ids.values().toArray()));
+            statement.setArray(2, connection.createArrayOf("text", ids.keySet().toArray()));
+            return statement;
+        });
+    }
+
+    private void query(String sql, Collection<String> serviceNames, Map<String, Long> ids) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("text", serviceNames.toArray()));
+            return statement;
+        }, resultSet -> {
+            ids.put(resultSet.getString("service_name"), resultSet.getLong("id"));
+        });
+    }
+}
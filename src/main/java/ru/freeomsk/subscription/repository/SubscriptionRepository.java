@@ -1,12 +1,18 @@
 package ru.freeomsk.subscription.repository;
 
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
 import ru.freeomsk.subscription.entity.Subscription;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Репозиторий для управления сущностями {@link Subscription}.
@@ -15,14 +21,132 @@ import java.util.List;
 public interface SubscriptionRepository extends JpaRepository<Subscription, Long> {
 
     /**
-     * Находит топ подписок, сгруппированных по названию сервиса и отсортированных по количеству подписок в порядке убывания.
+     * Выражение SQL с ID текущей транзакции в виде 64-битного числа: в отличие от xid,
+     * он не переполняется и сравним с границами снимка {@code pg_current_snapshot()}.
+     */
+    String CURRENT_TRANSACTION_ID = "CAST(CAST(pg_current_xact_id() AS text) AS BIGINT)";
+
+    /**
+     * Подсчитывает количество подписок по каждому сервису.
+     * Используется для первоначального заполнения индекса популярности.
      *
-     * @param pageable информация о пагинации.
      * @return список объектов, где каждый объект содержит название сервиса и количество подписок.
      */
     @Query("SELECT s.nameService.serviceName, COUNT(s) " +
             "FROM Subscription s " +
-            "GROUP BY s.nameService.serviceName " +
-            "ORDER BY COUNT(s) DESC")
-    List<Object[]> findTop3Subscriptions(Pageable pageable);
-}
\ No newline at end of file
+            "GROUP BY s.nameService.serviceName")
+    List<Object[]> countSubscriptionsByService();
+
+    /**
+     * Подсчитывает подписки, созданные начиная с указанного момента, по сервисам и часам создания.
+     * Используется для первоначального заполнения агрегатов популярности за период.
+     *
+     * @param since начало периода.
+     * @return список объектов, где каждый объект содержит название сервиса,
+     * начало часа в секундах эпохи и количество подписок.
+     */
+    @Query(value = "SELECT n.service_name, CAST(floor(extract(epoch FROM s.created_at) / 3600) AS BIGINT) * 3600, COUNT(*) " +
+            "FROM subscriptions s JOIN services n ON n.id = s.service_id " +
+            "WHERE s.created_at >= :since " +
+            "GROUP BY 1, 2",
+            nativeQuery = true)
+    List<Object[]> countCreatedSinceByServiceAndHour(@Param("since") Instant since);
+
+    /**
+     * Находит подписки пользователя одним запросом с соединением таблицы сервисов.
+     * Результат строится сразу в виде DTO, без загрузки сущностей в контекст персистентности.
+     *
+     * @param userId ID пользователя.
+     * @return список подписок пользователя, упорядоченный по ID.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT new ru.freeomsk.subscription.dto.SubscriptionDTO(s.id, n.serviceName, s.user.id) " +
+            "FROM Subscription s JOIN s.nameService n " +
+            "WHERE s.user.id = :userId " +
+            "ORDER BY s.id")
+    List<SubscriptionDTO> findDTOsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Находит подписки пользователя на указанные сервисы.
+     *
+     * @param userId ID пользователя.
+     * @param serviceIds ID сервисов.
+     * @return список существующих подписок пользователя на эти сервисы.
+     */
+    @Query("SELECT new ru.freeomsk.subscription.dto.SubscriptionDTO(s.id, n.serviceName, s.user.id) " +
+            "FROM Subscription s JOIN s.nameService n " +
+            "WHERE s.user.id = :userId AND n.id IN :serviceIds")
+    List<SubscriptionDTO> findDTOsByUserIdAndServiceIds(@Param("userId") Long userId,
+                                                        @Param("serviceIds") Collection<Long> serviceIds);
+
+    /**
+     * Находит ID подписки пользователя на сервис.
+     *
+     * @param userId ID пользователя.
+     * @param serviceId ID сервиса.
+     * @return Optional с ID подписки, если она существует.
+     */
+    @Query("SELECT s.id FROM Subscription s WHERE s.user.id = :userId AND s.nameService.id = :serviceId")
+    Optional<Long> findIdByUserIdAndServiceId(@Param("userId") Long userId, @Param("serviceId") Long serviceId);
+
+    /**
+     * Удаляет подписку одним условным запросом, если она принадлежит пользователю.
+     *
+     * @param id ID подписки.
+     * @param userId ID пользователя.
+     * @return список из одного объекта, содержащего название сервиса, время создания удаленной подписки
+     * в секундах эпохи и ID удалившей ее транзакции, или пустой список, если ничего не удалено.
+     */
+    @Transactional
+    @Query(value = "WITH deleted AS (" +
+            "DELETE FROM subscriptions WHERE id = :id AND user_id = :userId RETURNING service_id, created_at) " +
+            "SELECT n.service_name, CAST(extract(epoch FROM d.created_at) AS BIGINT), " + CURRENT_TRANSACTION_ID + " " +
+            "FROM deleted d JOIN services n ON n.id = d.service_id",
+            nativeQuery = true)
+    List<Object[]> deleteOwned(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * Удаляет все подписки пользователя одним запросом.
+     *
+     * @param userId ID пользователя.
+     * @return список объектов, где каждый объект содержит ID удаленной подписки, название ее сервиса,
+     * время ее создания в секундах эпохи и ID удалившей ее транзакции.
+     */
+    @Transactional
+    @Query(value = "WITH deleted AS (" +
+            "DELETE FROM subscriptions WHERE user_id = :userId RETURNING id, service_id, created_at) " +
+            "SELECT d.id, n.service_name, CAST(extract(epoch FROM d.created_at) AS BIGINT), " + CURRENT_TRANSACTION_ID + " " +
+            "FROM deleted d JOIN services n ON n.id = d.service_id",
+            nativeQuery = true)
+    List<Object[]> deleteAllByUserId(@Param("userId") Long userId);
+
+    /**
+     * Возвращает ID текущей транзакции. Вызывается в транзакции, изменившей подписки,
+     * чтобы передать его вместе с изменениями.
+     *
+     * @return ID текущей транзакции.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "SELECT " + CURRENT_TRANSACTION_ID, nativeQuery = true)
+    Long currentTransactionId();
+
+    /**
+     * Возвращает снимок данных текущей транзакции в текстовом виде {@code xmin:xmax:xip,...}.
+     * Вызывается в транзакции REPEATABLE READ вместе с запросами перестроения индексов,
+     * чтобы определить, какие транзакции видны в прочитанных данных.
+     *
+     * @return снимок данных текущей транзакции.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "SELECT CAST(pg_current_snapshot() AS text)", nativeQuery = true)
+    String currentSnapshot();
+
+    /**
+     * Находит ID владельца подписки без загрузки сущностей.
+     *
+     * @param id ID подписки.
+     * @return Optional с ID пользователя, если подписка существует.
+     */
+    @Query("SELECT s.user.id FROM Subscription s WHERE s.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
+}
@@ -1,10 +1,60 @@
 package ru.freeomsk.subscription.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.freeomsk.subscription.dto.UserDTO;
 import ru.freeomsk.subscription.entity.User;
 
+import java.util.List;
+import java.util.stream.Stream;
+
 /**
  * Репозиторий для управления сущностями {@link User}.
  */
 public interface UserRepository extends JpaRepository<User, Long> {
-}
\ No newline at end of file
+
+    /**
+     * Находит страницу пользователей с ID больше указанного курсора (keyset-пагинация).
+     *
+     * @param after ID последнего пользователя предыдущей страницы.
+     * @param pageable размер страницы.
+     * @return список пользователей, упорядоченный по ID.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT new ru.freeomsk.subscription.dto.UserDTO(u.id, u.name, u.email) " +
+            "FROM User u " +
+            "WHERE u.id > :after " +
+            "ORDER BY u.id")
+    List<UserDTO> findPageAfter(@Param("after") Long after, Pageable pageable);
+
+    /**
+     * Читает всех пользователей однонаправленным курсором с ограниченным размером выборки.
+     * Поток должен потребляться внутри транзакции и закрываться после использования.
+     *
+     * @return поток пользователей, упорядоченный по ID.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new ru.freeomsk.subscription.dto.UserDTO(u.id, u.name, u.email) " +
+            "FROM User u " +
+            "ORDER BY u.id")
+    Stream<UserDTO> streamAll();
+
+    /**
+     * Удаляет пользователя одним запросом без загрузки сущности и каскада по подпискам.
+     * Подписки пользователя должны быть удалены заранее.
+     *
+     * @param id ID пользователя.
+     * @return количество удаленных строк.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id = :id")
+    int deleteUserById(@Param("id") Long id);
+}
@@ -0,0 +1,95 @@
+package ru.freeomsk.subscription.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import ru.freeomsk.subscription.dto.SubscriptionEventDTO;
+
+import java.util.List;
+
+/**
+ * Применение изменений данных к состоянию узла в памяти: кэшу пользователей,
+ * индексу и агрегатам популярности, версиям подписок, окну чтения собственных записей
+ * и потоку событий подписок. Одинаково применяется к изменениям этого узла
+ * и к изменениям, полученным от других узлов.
+ * Кэш названий сервисов не требует инвалидации: сервисы не удаляются и не переименовываются.
+ */
+@Component
+public class ChangeApplier {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeApplier.class);
+
+    private final UserCache userCache;
+    private final ServicePopularityIndex popularityIndex;
+    private final PopularityRollups rollups;
+    private final SubscriptionVersions versions;
+    private final ReadYourWrites readYourWrites;
+    private final SubscriptionEventStream eventStream;
+
+    /**
+     * Конструктор для создания экземпляра ChangeApplier.
+     *
+     * @param userCache кэш пользователей.
+     * @param popularityIndex индекс популярности сервисов.
+     * @param rollups агрегаты популярности сервисов за период.
+     * @param versions версии подписок пользователей.
+     * @param readYourWrites окно чтения собственных записей.
+     * @param eventStream поток событий изменения подписок.
+     */
+    public ChangeApplier(UserCache userCache, ServicePopularityIndex popularityIndex, PopularityRollups rollups,
+                         SubscriptionVersions versions, ReadYourWrites readYourWrites,
+                         SubscriptionEventStream eventStream) {
+        this.userCache = userCache;
+        this.popularityIndex = popularityIndex;
+        this.rollups = rollups;
+        this.versions = versions;
+        this.readYourWrites = readYourWrites;
+        this.eventStream = eventStream;
+    }
+
+    /**
+     * Применяет изменения к состоянию узла. Вызывается после фиксации изменений.
+     *
+     * @param events изменения в порядке их выполнения.
+     */
+    public void apply(List<InvalidationEvent> events) {
+        for (InvalidationEvent event : events) {
+            Long userId = event.userId();
+            readYourWrites.recordWrite(userId);
+            switch (event.type()) {
+                case USER_CHANGED -> userCache.invalidate(userId);
+                case USER_DELETED -> {
+                    userCache.invalidate(userId);
+                    versions.userChanged(userId);
+                }
+                case SUBSCRIPTION_ADDED -> {
+                    popularityIndex.added(event);
+                    rollups.added(event);
+                    versions.userChanged(userId);
+                    eventStream.publish(new SubscriptionEventDTO(SubscriptionEventDTO.Type.ADDED,
+                            event.subscriptionId(), event.serviceName(), userId));
+                }
+                case SUBSCRIPTION_DELETED -> {
+                    popularityIndex.removed(event);
+                    rollups.removed(event);
+                    versions.userChanged(userId);
+                    eventStream.publish(new SubscriptionEventDTO(SubscriptionEventDTO.Type.DELETED,
+                            event.subscriptionId(), event.serviceName(), userId));
+                }
+            }
+        }
+    }
+
+    /**
+     * Полностью восстанавливает состояние узла по базе данных.
+     * Вызывается, если изменения других узлов могли быть пропущены.
+     */
+    public void resync() {
+        logger.warn("Полная синхронизация кэшей: изменения других узлов могли быть пропущены");
+        userCache.invalidateAll();
+        versions.invalidateAll();
+        popularityIndex.reload();
+        rollups.reload();
+        eventStream.reset();
+    }
+}
@@ -0,0 +1,29 @@
+package ru.freeomsk.subscription.service;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Распознавание нарушений именованных ограничений базы данных.
+ */
+final class Constraints {
+
+    private Constraints() {
+    }
+
+    /**
+     * Проверяет, вызвано ли исключение нарушением указанного ограничения.
+     *
+     * @param exception исключение нарушения целостности данных.
+     * @param constraintName имя ограничения в схеме базы данных.
+     * @return true, если нарушено указанное ограничение.
+     */
+    static boolean isViolated(DataIntegrityViolationException exception, String constraintName) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return constraintName.equalsIgnoreCase(violation.getConstraintName());
+            }
+        }
+        return false;
+    }
+}
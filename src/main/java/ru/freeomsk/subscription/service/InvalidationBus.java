@@ -0,0 +1,280 @@
+package ru.freeomsk.subscription.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+import ru.freeomsk.subscription.sharding.Shards;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Шина инвалидации кэшей между узлами на PostgreSQL LISTEN/NOTIFY.
+ * Изменение применяется к состоянию своего узла сразу, а остальным узлам отправляется
+ * через pg_notify отдельным потоком, без участия завершенной транзакции. Уведомления
+ * пакетируются в пределах ограничения размера NOTIFY и нумеруются по узлу-отправителю.
+ * Каждый узел слушает канал на отдельном соединении вне пула и применяет чужие изменения;
+ * пропуск номера от отправителя или разрыв соединения приводят к полной синхронизации,
+ * так как уведомления, отправленные в это время, потеряны.
+ * При шардировании канал находится в шарде 0.
+ * Запуск шины ожидает первой успешной подписки на канал, поэтому состояние узла загружается
+ * ({@link PopularityLoader}) уже после начала прослушивания. Если подписка не удалась за время
+ * ожидания, после нее выполняется полная синхронизация.
+ */
+@Component
+public class InvalidationBus implements SmartLifecycle, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidationBus.class);
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000;
+
+    private final ChangeApplier applier;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Shards shards;
+    private final DataSource listenerDataSource;
+    private final boolean enabled;
+    private final String channel;
+    private final long pollMillis;
+    private final long listenTimeoutMillis;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final BlockingQueue<InvalidationEvent> outgoing = new LinkedBlockingQueue<>();
+    private final InvalidationMessage.Sequences lastSequences = new InvalidationMessage.Sequences();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final CountDownLatch listening = new CountDownLatch(1);
+    private final AtomicBoolean awaitingListen = new AtomicBoolean(true);
+    private volatile boolean running;
+    private Thread publisher;
+    private Thread listener;
+
+    /**
+     * Конструктор для создания экземпляра InvalidationBus.
+     *
+     * @param applier применение изменений к состоянию узла.
+     * @param jdbcTemplate JdbcTemplate для отправки уведомлений.
+     * @param objectMapper преобразователь JSON.
+     * @param shards шарды пользователей.
+     * @param dataSourceProperties свойства spring.datasource для соединения слушателя.
+     * @param enabled включена ли рассылка изменений другим узлам.
+     * @param channel имя канала уведомлений.
+     * @param pollInterval интервал проверки соединения слушателя.
+     * @param listenTimeout максимальное время ожидания подписки на канал при запуске.
+     */
+    public InvalidationBus(ChangeApplier applier, JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, Shards shards,
+                           DataSourceProperties dataSourceProperties,
+                           @Value("${subscription.invalidation.enabled:true}") boolean enabled,
+                           @Value("${subscription.invalidation.channel:subscription_invalidation}") String channel,
+                           @Value("${subscription.invalidation.poll-interval:5s}") Duration pollInterval,
+                           @Value("${subscription.invalidation.listen-timeout:10s}") Duration listenTimeout) {
+        this.applier = applier;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.shards = shards;
+        this.listenerDataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(SimpleDriverDataSource.class)
+                .build();
+        this.enabled = enabled;
+        this.channel = channel;
+        this.pollMillis = pollInterval.toMillis();
+        this.listenTimeoutMillis = listenTimeout.toMillis();
+    }
+
+    /**
+     * Применяет изменения к состоянию узла и рассылает их остальным узлам.
+     * Вызывается после фиксации изменений.
+     *
+     * @param events изменения в порядке их выполнения.
+     */
+    public void publish(List<InvalidationEvent> events) {
+        applier.apply(events);
+        if (enabled && running) {
+            outgoing.addAll(events);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        publisher = Thread.ofPlatform().name("invalidation-publisher").daemon().start(this::publishLoop);
+        listener = Thread.ofPlatform().name("invalidation-listener").daemon().start(this::listenLoop);
+        try {
+            if (!listening.await(listenTimeoutMillis, TimeUnit.MILLISECONDS) && awaitingListen.compareAndSet(true, false)) {
+                logger.warn("Подписка на канал изменений {} не установлена за {} мс, "
+                        + "после подписки будет выполнена полная синхронизация", channel, listenTimeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            awaitingListen.set(false);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (publisher != null) {
+            publisher.interrupt();
+            listener.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Слушатель подключается до запуска веб-сервера.
+        return 0;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("subscription.invalidation.sent", sent, AtomicLong::get)
+                .description("Количество отправленных уведомлений об изменениях")
+                .register(registry);
+        FunctionCounter.builder("subscription.invalidation.received", received, AtomicLong::get)
+                .description("Количество полученных уведомлений от других узлов")
+                .register(registry);
+        FunctionCounter.builder("subscription.invalidation.resyncs", resyncs, AtomicLong::get)
+                .description("Количество полных синхронизаций кэшей")
+                .register(registry);
+    }
+
+    private void publishLoop() {
+        List<InvalidationEvent> batch = new ArrayList<>();
+        while (running) {
+            try {
+                InvalidationEvent first = outgoing.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                outgoing.drainTo(batch, InvalidationMessage.MAX_BATCH - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<InvalidationEvent> batch) {
+        for (List<InvalidationEvent> chunk : InvalidationMessage.chunks(batch, objectMapper)) {
+            notify(chunk);
+        }
+    }
+
+    private void notify(List<InvalidationEvent> events) {
+        // Номер расходуется и при ошибке отправки: получатели обнаружат пропуск.
+        InvalidationMessage message = new InvalidationMessage(nodeId, sequence.incrementAndGet(), events);
+        try {
+            String payload = objectMapper.writeValueAsString(message);
+            shards.onShard(0, () -> jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel, payload));
+            sent.incrementAndGet();
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.warn("Не удалось отправить уведомление об изменениях ({} событий)", events.size(), e);
+        }
+    }
+
+    private void listenLoop() {
+        boolean connectedBefore = false;
+        long reconnectDelay = 1000;
+        while (running) {
+            try (Connection connection = listenerDataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                logger.info("Подписка на канал изменений {} установлена", channel);
+                // Запуск приложения уже продолжился без подписки: изменения, отправленные до нее, потеряны.
+                boolean listenedInTime = awaitingListen.compareAndSet(true, false);
+                listening.countDown();
+                if (connectedBefore || !listenedInTime) {
+                    resync();
+                }
+                connectedBefore = true;
+                reconnectDelay = 1000;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollMillis);
+                    if (notifications == null || notifications.length == 0) {
+                        try (Statement statement = connection.createStatement()) {
+                            statement.execute("SELECT 1");
+                        }
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        receive(notification.getParameter());
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Соединение слушателя канала изменений потеряно, повтор через {} мс", reconnectDelay, e);
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        InvalidationMessage message;
+        try {
+            message = objectMapper.readValue(payload, InvalidationMessage.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("Некорректное уведомление об изменениях: {}", payload, e);
+            return;
+        }
+        if (nodeId.equals(message.node())) {
+            return;
+        }
+        received.incrementAndGet();
+        boolean missed = lastSequences.missed(message);
+        applier.apply(message.events());
+        if (missed) {
+            resync();
+        }
+    }
+
+    private void resync() {
+        resyncs.incrementAndGet();
+        applier.resync();
+    }
+}
@@ -0,0 +1,52 @@
+package ru.freeomsk.subscription.service;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Заполнение индекса и агрегатов популярности при запуске приложения.
+ * Данные читаются при старте контекста до запуска веб-сервера, а не при создании бинов,
+ * поэтому контекст можно поднять без чтения подписок, например в тренировочном запуске
+ * для архива CDS.
+ */
+@Component
+public class PopularityLoader implements SmartLifecycle {
+
+    private final ServicePopularityIndex popularityIndex;
+    private final PopularityRollups rollups;
+    private volatile boolean running;
+
+    /**
+     * Конструктор для создания экземпляра PopularityLoader.
+     *
+     * @param popularityIndex индекс популярности сервисов.
+     * @param rollups агрегаты популярности сервисов за период.
+     */
+    public PopularityLoader(ServicePopularityIndex popularityIndex, PopularityRollups rollups) {
+        this.popularityIndex = popularityIndex;
+        this.rollups = rollups;
+    }
+
+    @Override
+    public void start() {
+        popularityIndex.reload();
+        rollups.reload();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // После запуска шины инвалидации: подписка на изменения других узлов начинается до загрузки.
+        return 1;
+    }
+}
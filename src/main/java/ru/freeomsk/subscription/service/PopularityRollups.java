@@ -0,0 +1,281 @@
+package ru.freeomsk.subscription.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.freeomsk.subscription.repository.SubscriptionRepository;
+import ru.freeomsk.subscription.sharding.Shards;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Агрегаты популярности сервисов по времени создания подписок, хранящиеся в памяти.
+ * Подписки последних суток учитываются в почасовых корзинах, более старые корзины
+ * сворачиваются в суточные, которые хранятся неделю. Добавление подписки увеличивает
+ * счетчик корзины ее времени создания, удаление уменьшает тот же счетчик, поэтому
+ * ТОП за период рассчитывается по нескольким десяткам корзин независимо от размера таблицы.
+ * Граница периода округляется вниз до начала корзины: до часа для 1h и 24h,
+ * до суток для 7d.
+ * Корзины читаются в снимке данных каждого шарда ({@link ShardSnapshots}): изменения,
+ * транзакция которых видна в снимке, не применяются к прочитанным корзинам повторно.
+ */
+@Component
+public class PopularityRollups implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PopularityRollups.class);
+    private static final long HOUR_SECONDS = 3600;
+    private static final long DAY_SECONDS = 24 * HOUR_SECONDS;
+    private static final long HOURLY_RETENTION_SECONDS = DAY_SECONDS;
+    private static final long DAILY_RETENTION_SECONDS = PopularityWindow.WEEK.duration().toSeconds();
+    private static final Comparator<Map.Entry<String, Long>> RANKING =
+            Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final Shards shards;
+    private final TransactionTemplate snapshotRead;
+    private final NavigableMap<Long, Map<String, Long>> hourly = new TreeMap<>();
+    private final NavigableMap<Long, Map<String, Long>> daily = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long compactedBefore;
+    private ShardSnapshots snapshots = ShardSnapshots.NONE;
+    private List<Delta> appliedDuringReload;
+
+    /**
+     * Конструктор для создания экземпляра PopularityRollups.
+     *
+     * @param subscriptionRepository репозиторий для работы с подписками.
+     * @param shards шарды пользователей.
+     * @param transactionManager менеджер транзакций.
+     */
+    public PopularityRollups(SubscriptionRepository subscriptionRepository, Shards shards,
+                             PlatformTransactionManager transactionManager) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.shards = shards;
+        this.snapshotRead = ShardSnapshots.snapshotRead(transactionManager);
+    }
+
+    /**
+     * Перестраивает агрегаты по подпискам, созданным за последнюю неделю.
+     * При шардировании почасовые счетчики всех шардов суммируются.
+     */
+    public synchronized void reload() {
+        lock.writeLock().lock();
+        try {
+            appliedDuringReload = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            long now = Instant.now().getEpochSecond();
+            Instant since = Instant.ofEpochSecond(floor(now - DAILY_RETENTION_SECONDS, DAY_SECONDS));
+            ShardSnapshots.Loaded<List<Object[]>> shardRows = ShardSnapshots.load(shards, snapshotRead,
+                    subscriptionRepository, () -> subscriptionRepository.countCreatedSinceByServiceAndHour(since));
+            lock.writeLock().lock();
+            try {
+                hourly.clear();
+                daily.clear();
+                compactedBefore = 0;
+                for (List<Object[]> rows : shardRows.results()) {
+                    for (Object[] row : rows) {
+                        add(hourly, ((Number) row[1]).longValue(), (String) row[0], ((Number) row[2]).longValue());
+                    }
+                }
+                compact(Instant.now().getEpochSecond());
+                snapshots = shardRows.snapshots();
+                // Изменения, примененные после начала чтения, не попали в прочитанные корзины,
+                // если их транзакция не видна в снимке шарда.
+                for (Delta delta : appliedDuringReload) {
+                    if (!snapshots.includes(delta.shard(), delta.transactionId())) {
+                        apply(delta.serviceName(), delta.created(), delta.delta());
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                appliedDuringReload = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        logger.info("Агрегаты популярности загружены, почасовых корзин: {}, суточных: {}", hourly.size(), daily.size());
+    }
+
+    /**
+     * Учитывает добавленную подписку.
+     *
+     * @param event событие добавления подписки.
+     */
+    public void added(InvalidationEvent event) {
+        adjust(event, 1);
+    }
+
+    /**
+     * Учитывает удаленную подписку. Подписки без времени создания и созданные
+     * раньше хранимых корзин не влияют на агрегаты.
+     *
+     * @param event событие удаления подписки.
+     */
+    public void removed(InvalidationEvent event) {
+        adjust(event, -1);
+    }
+
+    /**
+     * Возвращает названия самых популярных сервисов среди подписок, созданных за период.
+     *
+     * @param window период.
+     * @param limit максимальное количество сервисов в ответе.
+     * @return список названий сервисов, упорядоченный по убыванию количества подписок.
+     */
+    public List<String> top(PopularityWindow window, int limit) {
+        long now = Instant.now().getEpochSecond();
+        compactIfNeeded(now);
+        long since = now - window.duration().toSeconds();
+        Map<String, Long> totals = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            sum(hourly.tailMap(floor(since, HOUR_SECONDS), true), totals);
+            if (since < compactedBefore) {
+                sum(daily.tailMap(floor(since, DAY_SECONDS), true), totals);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return totals.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .sorted(RANKING)
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("subscription.popularity.buckets", this, PopularityRollups::bucketCount)
+                .description("Количество почасовых и суточных корзин агрегатов популярности")
+                .register(registry);
+    }
+
+    /**
+     * Возвращает количество подписок сервиса во всех хранимых корзинах.
+     *
+     * @param serviceName название сервиса.
+     * @return количество подписок сервиса за хранимый период.
+     */
+    long count(String serviceName) {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (Map<String, Long> counts : hourly.values()) {
+                count += counts.getOrDefault(serviceName, 0L);
+            }
+            for (Map<String, Long> counts : daily.values()) {
+                count += counts.getOrDefault(serviceName, 0L);
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int bucketCount() {
+        lock.readLock().lock();
+        try {
+            return hourly.size() + daily.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void adjust(InvalidationEvent event, long delta) {
+        if (event.createdAt() == null) {
+            return;
+        }
+        long created = event.createdAt();
+        int shard = shards.shardOf(event.userId());
+        lock.writeLock().lock();
+        try {
+            if (appliedDuringReload != null) {
+                appliedDuringReload.add(new Delta(event.serviceName(), created, delta, shard, event.transactionId()));
+            }
+            if (!snapshots.includes(shard, event.transactionId())) {
+                apply(event.serviceName(), created, delta);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(String serviceName, long created, long delta) {
+        long now = Instant.now().getEpochSecond();
+        compact(now);
+        if (created >= compactedBefore) {
+            add(hourly, floor(created, HOUR_SECONDS), serviceName, delta);
+        } else if (created >= floor(now - DAILY_RETENTION_SECONDS, DAY_SECONDS)) {
+            add(daily, floor(created, DAY_SECONDS), serviceName, delta);
+        }
+    }
+
+    private void compactIfNeeded(long now) {
+        if (floor(now, HOUR_SECONDS) - HOURLY_RETENTION_SECONDS > compactedBefore) {
+            lock.writeLock().lock();
+            try {
+                compact(now);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void compact(long now) {
+        long boundary = floor(now, HOUR_SECONDS) - HOURLY_RETENTION_SECONDS;
+        if (boundary <= compactedBefore) {
+            return;
+        }
+        NavigableMap<Long, Map<String, Long>> expired = hourly.headMap(boundary, false);
+        expired.forEach((hour, counts) -> counts.forEach(
+                (serviceName, count) -> add(daily, floor(hour, DAY_SECONDS), serviceName, count)));
+        expired.clear();
+        daily.headMap(floor(now - DAILY_RETENTION_SECONDS, DAY_SECONDS), false).clear();
+        compactedBefore = boundary;
+    }
+
+    private static void add(NavigableMap<Long, Map<String, Long>> buckets, long bucket, String serviceName, long delta) {
+        Map<String, Long> counts = buckets.computeIfAbsent(bucket, key -> new HashMap<>());
+        if (counts.merge(serviceName, delta, Long::sum) == 0) {
+            counts.remove(serviceName);
+            if (counts.isEmpty()) {
+                buckets.remove(bucket);
+            }
+        }
+    }
+
+    private static void sum(Map<Long, Map<String, Long>> buckets, Map<String, Long> totals) {
+        for (Map<String, Long> counts : buckets.values()) {
+            counts.forEach((serviceName, count) -> totals.merge(serviceName, count, Long::sum));
+        }
+    }
+
+    private static long floor(long epochSecond, long bucketSeconds) {
+        return Math.floorDiv(epochSecond, bucketSeconds) * bucketSeconds;
+    }
+
+    private record Delta(String serviceName, long created, long delta, int shard, Long transactionId) {
+    }
+}
@@ -0,0 +1,62 @@
+package ru.freeomsk.subscription.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.freeomsk.subscription.config.ReplicaRoutingDataSource;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Окно чтения собственных записей при чтении с реплик.
+ * В течение окна после изменения данных пользователя все чтения его данных
+ * выполняются на основном узле, поэтому ни автор изменения, ни кэши и версии
+ * не получают устаревшие данные отстающей реплики. Окно должно превышать
+ * допустимое отставание реплик.
+ */
+@Component
+public class ReadYourWrites {
+
+    private final Cache<Long, Boolean> recentWrites;
+
+    /**
+     * Конструктор для создания экземпляра ReadYourWrites.
+     *
+     * @param window длительность окна после изменения.
+     * @param maximumSize максимальное количество пользователей в окне.
+     */
+    public ReadYourWrites(@Value("${subscription.replicas.read-your-writes-window:5s}") Duration window,
+                          @Value("${subscription.replicas.read-your-writes-maximum-size:100000}") long maximumSize) {
+        this.recentWrites = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * Отмечает изменение данных пользователя. Вызывается после фиксации изменения.
+     *
+     * @param userId ID пользователя.
+     */
+    public void recordWrite(Long userId) {
+        recentWrites.put(userId, Boolean.TRUE);
+    }
+
+    /**
+     * Выполняет чтение данных пользователя, направляя его на основной узел,
+     * если пользователь изменялся в пределах окна.
+     *
+     * @param userId ID пользователя.
+     * @param query чтение данных.
+     * @param <T> тип результата.
+     * @return результат чтения.
+     */
+    public <T> T read(Long userId, Supplier<T> query) {
+        if (recentWrites.getIfPresent(userId) != null) {
+            return ReplicaRoutingDataSource.onPrimary(query);
+        }
+        return query.get();
+    }
+}
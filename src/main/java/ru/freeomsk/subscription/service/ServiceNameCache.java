@@ -0,0 +1,79 @@
+package ru.freeomsk.subscription.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.freeomsk.subscription.repository.ServiceRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ограниченный кэш соответствия названия сервиса его ID.
+ * Набор сервисов мал и почти не меняется, поэтому большинство обращений
+ * обслуживается без запроса к базе данных. При промахе сервис находится
+ * или атомарно создается запросом INSERT ... ON CONFLICT DO NOTHING ... RETURNING,
+ * а параллельные промахи по одному ключу объединяются в один запрос.
+ * Попадания, промахи и вытеснения публикуются как метрики кэша service_names.
+ */
+@Component
+public class ServiceNameCache implements MeterBinder {
+
+    private final ServiceRepository serviceRepository;
+    private final Cache<String, Long> cache;
+
+    /**
+     * Конструктор для создания экземпляра ServiceNameCache.
+     *
+     * @param serviceRepository репозиторий для работы с сервисами.
+     * @param maximumSize максимальное количество сервисов в кэше.
+     */
+    public ServiceNameCache(ServiceRepository serviceRepository,
+                            @Value("${subscription.service-cache.maximum-size:1000}") long maximumSize) {
+        this.serviceRepository = serviceRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Возвращает ID сервиса, создавая сервис при необходимости.
+     *
+     * @param serviceName название сервиса.
+     * @return ID сервиса.
+     */
+    public Long resolveId(String serviceName) {
+        return cache.get(serviceName, name -> serviceRepository.resolveServiceIds(List.of(name)).get(name));
+    }
+
+    /**
+     * Возвращает ID нескольких сервисов, создавая отсутствующие одним запросом.
+     *
+     * @param serviceNames названия сервисов.
+     * @return отображение названия сервиса на его ID.
+     */
+    public Map<String, Long> resolveIds(Collection<String> serviceNames) {
+        return cache.getAll(serviceNames, missing -> serviceRepository.resolveServiceIds(List.copyOf(missing)));
+    }
+
+    /**
+     * Возвращает статистику кэша: количество попаданий, промахов и вытеснений.
+     *
+     * @return статистика кэша.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "service_names");
+    }
+}
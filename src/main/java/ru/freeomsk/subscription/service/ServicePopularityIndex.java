@@ -0,0 +1,232 @@
+package ru.freeomsk.subscription.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.freeomsk.subscription.repository.SubscriptionRepository;
+import ru.freeomsk.subscription.sharding.Shards;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс популярности сервисов, хранящийся в памяти.
+ * Содержит счетчики подписок по каждому сервису и упорядоченный рейтинг,
+ * что позволяет получать ТОП-N без обращения к базе данных.
+ * Заполняется при старте приложения ({@link PopularityLoader}) и далее обновляется инкрементально.
+ * Счетчики читаются в снимке данных каждого шарда ({@link ShardSnapshots}): изменения,
+ * примененные во время перестроения, запоминаются и повторно применяются к прочитанным
+ * счетчикам, только если их транзакция не видна в снимке. Изменения, уже учтенные в снимке,
+ * не применяются и после перестроения, поэтому запоздавшее уведомление не учитывается дважды.
+ */
+@Component
+public class ServicePopularityIndex implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServicePopularityIndex.class);
+    private static final Comparator<Entry> RANKING = Comparator.comparingLong(Entry::count).reversed()
+            .thenComparing(Entry::serviceName);
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final Shards shards;
+    private final TransactionTemplate snapshotRead;
+    private final Map<String, Long> counts = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(RANKING);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private ShardSnapshots snapshots = ShardSnapshots.NONE;
+    private List<Delta> appliedDuringReload;
+
+    /**
+     * Конструктор для создания экземпляра ServicePopularityIndex.
+     *
+     * @param subscriptionRepository репозиторий для работы с подписками.
+     * @param shards шарды пользователей.
+     * @param transactionManager менеджер транзакций.
+     */
+    public ServicePopularityIndex(SubscriptionRepository subscriptionRepository, Shards shards,
+                                  PlatformTransactionManager transactionManager) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.shards = shards;
+        this.snapshotRead = ShardSnapshots.snapshotRead(transactionManager);
+    }
+
+    /**
+     * Перестраивает индекс по текущему содержимому базы данных.
+     * При шардировании частичные счетчики всех шардов суммируются.
+     */
+    public synchronized void reload() {
+        lock.writeLock().lock();
+        try {
+            appliedDuringReload = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        int loaded;
+        try {
+            ShardSnapshots.Loaded<List<Object[]>> shardCounts = ShardSnapshots.load(shards, snapshotRead,
+                    subscriptionRepository, subscriptionRepository::countSubscriptionsByService);
+            Map<String, Long> totals = new HashMap<>();
+            for (List<Object[]> rows : shardCounts.results()) {
+                for (Object[] row : rows) {
+                    totals.merge((String) row[0], ((Number) row[1]).longValue(), Long::sum);
+                }
+            }
+            loaded = totals.size();
+            lock.writeLock().lock();
+            try {
+                counts.clear();
+                ranking.clear();
+                totals.forEach((serviceName, count) -> {
+                    counts.put(serviceName, count);
+                    ranking.add(new Entry(serviceName, count));
+                });
+                snapshots = shardCounts.snapshots();
+                // Изменения, примененные после начала чтения, не попали в прочитанные счетчики,
+                // если их транзакция не видна в снимке шарда.
+                for (Delta delta : appliedDuringReload) {
+                    if (!snapshots.includes(delta.shard(), delta.transactionId())) {
+                        apply(delta.serviceName(), delta.delta());
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                appliedDuringReload = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        logger.info("Индекс популярности сервисов загружен, сервисов: {}", loaded);
+    }
+
+    /**
+     * Учитывает добавленную подписку: увеличивает счетчик подписок сервиса на единицу.
+     *
+     * @param event событие добавления подписки.
+     */
+    public void added(InvalidationEvent event) {
+        adjust(event, 1);
+    }
+
+    /**
+     * Учитывает удаленную подписку: уменьшает счетчик подписок сервиса на единицу.
+     *
+     * @param event событие удаления подписки.
+     */
+    public void removed(InvalidationEvent event) {
+        adjust(event, -1);
+    }
+
+    /**
+     * Возвращает названия самых популярных сервисов.
+     *
+     * @param limit максимальное количество сервисов в ответе.
+     * @return список названий сервисов, упорядоченный по убыванию количества подписок.
+     */
+    public List<String> top(int limit) {
+        lock.readLock().lock();
+        try {
+            List<String> result = new ArrayList<>(Math.min(limit, ranking.size()));
+            for (Entry entry : ranking) {
+                if (result.size() == limit) {
+                    break;
+                }
+                result.add(entry.serviceName());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает количество сервисов, имеющих хотя бы одну подписку.
+     *
+     * @return количество сервисов в индексе.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ranking.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("subscription.popularity.services", this, ServicePopularityIndex::size)
+                .description("Количество сервисов в индексе популярности")
+                .register(registry);
+    }
+
+    /**
+     * Возвращает счетчик подписок сервиса.
+     *
+     * @param serviceName название сервиса.
+     * @return количество подписок сервиса в индексе.
+     */
+    long count(String serviceName) {
+        lock.readLock().lock();
+        try {
+            return counts.getOrDefault(serviceName, 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void adjust(InvalidationEvent event, long delta) {
+        int shard = shards.shardOf(event.userId());
+        lock.writeLock().lock();
+        try {
+            if (appliedDuringReload != null) {
+                appliedDuringReload.add(new Delta(event.serviceName(), delta, shard, event.transactionId()));
+            }
+            if (!snapshots.includes(shard, event.transactionId())) {
+                apply(event.serviceName(), delta);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(String serviceName, long delta) {
+        long current = counts.getOrDefault(serviceName, 0L);
+        long updated = current + delta;
+        if (current > 0) {
+            ranking.remove(new Entry(serviceName, current));
+        }
+        if (updated == 0) {
+            counts.remove(serviceName);
+            return;
+        }
+        counts.put(serviceName, updated);
+        if (updated > 0) {
+            ranking.add(new Entry(serviceName, updated));
+        } else {
+            // Удалений больше, чем подписок: изменения учтены неверно. Счетчик не исправляется,
+            // чтобы последующие добавления не скрыли ошибку, а сервис исключается из рейтинга.
+            logger.warn("Отрицательный счетчик подписок сервиса {}: {}", serviceName, updated);
+        }
+    }
+
+    private record Entry(String serviceName, long count) {
+    }
+
+    private record Delta(String serviceName, long delta, int shard, Long transactionId) {
+    }
+}
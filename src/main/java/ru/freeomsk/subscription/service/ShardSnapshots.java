@@ -0,0 +1,133 @@
+package ru.freeomsk.subscription.service;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.freeomsk.subscription.repository.SubscriptionRepository;
+import ru.freeomsk.subscription.sharding.Shards;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Снимки данных шардов, по которым перестроено состояние в памяти.
+ * Запрос перестроения выполняется в каждом шарде в транзакции REPEATABLE READ вместе
+ * с чтением ее снимка {@code pg_current_snapshot()}. Изменение, транзакция которого видна
+ * в снимке своего шарда, уже учтено в прочитанных данных и повторно не применяется,
+ * даже если уведомление о нем пришло после перестроения. Изменения без ID транзакции
+ * применяются всегда.
+ */
+final class ShardSnapshots {
+
+    /**
+     * Отсутствие снимков: до первого перестроения применяются все изменения.
+     */
+    static final ShardSnapshots NONE = new ShardSnapshots(List.of());
+
+    private final List<Snapshot> snapshots;
+
+    private ShardSnapshots(List<Snapshot> snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Создает шаблон транзакции чтения для запросов перестроения.
+     *
+     * @param transactionManager менеджер транзакций.
+     * @return шаблон транзакции REPEATABLE READ только для чтения.
+     */
+    static TransactionTemplate snapshotRead(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    /**
+     * Выполняет запрос во всех шардах, каждый в одном снимке данных с чтением этого снимка.
+     *
+     * @param shards шарды пользователей.
+     * @param snapshotRead шаблон транзакции, созданный {@link #snapshotRead(PlatformTransactionManager)}.
+     * @param subscriptionRepository репозиторий для работы с подписками.
+     * @param query запрос перестроения.
+     * @param <T> тип результата запроса.
+     * @return результаты запроса в порядке номеров шардов и снимки, в которых они прочитаны.
+     */
+    static <T> Loaded<T> load(Shards shards, TransactionTemplate snapshotRead,
+                              SubscriptionRepository subscriptionRepository, Supplier<T> query) {
+        // Снимок транзакции REPEATABLE READ фиксируется первым запросом и общий для всех ее запросов.
+        List<ShardResult<T>> shardResults = shards.onEachShard(() -> snapshotRead.execute(status ->
+                new ShardResult<>(Snapshot.parse(subscriptionRepository.currentSnapshot()), query.get())));
+        List<Snapshot> snapshots = new ArrayList<>(shardResults.size());
+        List<T> results = new ArrayList<>(shardResults.size());
+        for (ShardResult<T> shardResult : shardResults) {
+            snapshots.add(shardResult.snapshot());
+            results.add(shardResult.result());
+        }
+        return new Loaded<>(results, new ShardSnapshots(List.copyOf(snapshots)));
+    }
+
+    /**
+     * Проверяет, учтено ли изменение в прочитанных данных.
+     *
+     * @param shard номер шарда, в котором выполнено изменение.
+     * @param transactionId ID транзакции изменения или null.
+     * @return true, если транзакция видна в снимке шарда.
+     */
+    boolean includes(int shard, Long transactionId) {
+        return transactionId != null && shard < snapshots.size() && snapshots.get(shard).includes(transactionId);
+    }
+
+    /**
+     * Результаты запроса перестроения.
+     *
+     * @param results результаты в порядке номеров шардов.
+     * @param snapshots снимки, в которых они прочитаны.
+     * @param <T> тип результата запроса.
+     */
+    record Loaded<T>(List<T> results, ShardSnapshots snapshots) {
+    }
+
+    private record ShardResult<T>(Snapshot snapshot, T result) {
+    }
+
+    /**
+     * Снимок данных PostgreSQL.
+     *
+     * @param xmin наименьший ID транзакции, еще выполнявшейся в момент снимка.
+     * @param xmax ID, начиная с которого транзакции в снимке не видны.
+     * @param inProgress транзакции между xmin и xmax, выполнявшиеся в момент снимка.
+     */
+    record Snapshot(long xmin, long xmax, Set<Long> inProgress) {
+
+        /**
+         * Разбирает снимок в текстовом виде {@code xmin:xmax:xip,...}.
+         *
+         * @param text снимок.
+         * @return снимок.
+         */
+        static Snapshot parse(String text) {
+            String[] parts = text.split(":", -1);
+            Set<Long> inProgress = new HashSet<>();
+            if (!parts[2].isEmpty()) {
+                for (String transactionId : parts[2].split(",")) {
+                    inProgress.add(Long.parseLong(transactionId));
+                }
+            }
+            return new Snapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Set.copyOf(inProgress));
+        }
+
+        /**
+         * Проверяет, видны ли в снимке изменения зафиксированной транзакции.
+         *
+         * @param transactionId ID транзакции.
+         * @return true, если транзакция завершилась до снимка.
+         */
+        boolean includes(long transactionId) {
+            return transactionId < xmin || transactionId < xmax && !inProgress.contains(transactionId);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ru.freeomsk.subscription.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.freeomsk.subscription.exception.LoadTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одновременных загрузок с одинаковым ключом.
+ * Первый вызов по ключу выполняет загрузку в своем потоке, вызовы, пришедшие
+ * до ее завершения, ожидают и получают тот же результат или то же исключение.
+ * После завершения загрузки ключ освобождается, результат не хранится:
+ * следующий вызов выполняет новую загрузку. Ожидание ограничено тайм-аутом,
+ * по истечении которого ожидающий вызов завершается {@link LoadTimeoutException}.
+ * Результат передается всем ожидающим вызовам, поэтому его нельзя изменять.
+ *
+ * @param <K> тип ключа; ключ должен включать все параметры загрузки.
+ * @param <V> тип результата.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutNanos;
+    private final Counter loads;
+    private final Counter shared;
+    private final Counter timeouts;
+
+    /**
+     * Конструктор для создания экземпляра SingleFlight.
+     *
+     * @param name имя операции для метрик.
+     * @param timeout максимальное время ожидания чужой загрузки.
+     * @param registry реестр метрик.
+     */
+    public SingleFlight(String name, Duration timeout, MeterRegistry registry) {
+        this.timeoutNanos = timeout.toNanos();
+        this.loads = counter(registry, name, "load");
+        this.shared = counter(registry, name, "shared");
+        this.timeouts = counter(registry, name, "timeout");
+    }
+
+    /**
+     * Выполняет загрузку или присоединяется к уже выполняющейся загрузке с тем же ключом.
+     *
+     * @param key ключ загрузки.
+     * @param loader загрузка.
+     * @return результат загрузки.
+     * @throws LoadTimeoutException если чужая загрузка не завершилась за время ожидания.
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.increment();
+            return await(existing);
+        }
+        loads.increment();
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Возвращает количество выполняющихся загрузок.
+     *
+     * @return количество ключей с незавершенной загрузкой.
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private V await(CompletableFuture<V> flight) {
+        try {
+            return flight.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new LoadTimeoutException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoadTimeoutException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (CancellationException e) {
+            throw new LoadTimeoutException(e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry registry, String name, String result) {
+        return Counter.builder("subscription.single_flight.calls")
+                .description("Вызовы объединяемых загрузок: собственная загрузка, общий результат или тайм-аут")
+                .tag("operation", name)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,348 @@
+package ru.freeomsk.subscription.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.freeomsk.subscription.dto.SubscriptionEventDTO;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Поток событий добавления и удаления подписок для клиентов Server-Sent Events.
+ * Последние события хранятся в кольцевом буфере, что позволяет клиенту продолжить
+ * поток с заголовка Last-Event-ID после переподключения. Если запрошенное событие
+ * уже вытеснено из буфера или получено до перезапуска приложения, клиент получает
+ * событие reset и должен перечитать состояние через REST API.
+ * У каждого подписчика своя ограниченная очередь; подписчик, не успевающий читать
+ * события, отключается при переполнении очереди и может переподключиться с Last-Event-ID.
+ * Поток не закрепляется за соединением: очередь подписчика вычитывается задачей
+ * на виртуальном потоке только пока в ней есть события.
+ * Публикация не блокирует запись подписок: событие помещается в общую очередь, а нумерация,
+ * кольцевой буфер и раскладка по очередям подписчиков выполняются одним потоком рассылки
+ * в порядке публикации. Регистрация подписчика и сброс проходят через ту же очередь,
+ * поэтому продолжение потока не теряет и не повторяет события.
+ */
+@Component
+public class SubscriptionEventStream implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionEventStream.class);
+
+    private String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private long resets;
+    private final Entry[] ring;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService dispatcher = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("subscription-stream-", 0).factory());
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("subscription-stream-heartbeat").daemon().factory());
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final BlockingQueue<Command> commands = new LinkedBlockingQueue<>();
+    private final Thread fanOut;
+    private long lastSequence;
+
+    /**
+     * Конструктор для создания экземпляра SubscriptionEventStream.
+     *
+     * @param replaySize количество последних событий, доступных для продолжения потока.
+     * @param bufferSize размер очереди неотправленных событий одного подписчика.
+     * @param heartbeatInterval интервал отправки комментария для поддержания соединения.
+     * @param timeout время, после которого соединение закрывается и клиент переподключается.
+     */
+    public SubscriptionEventStream(@Value("${subscription.stream.replay-size:1024}") int replaySize,
+                                   @Value("${subscription.stream.buffer-size:256}") int bufferSize,
+                                   @Value("${subscription.stream.heartbeat-interval:15s}") Duration heartbeatInterval,
+                                   @Value("${subscription.stream.timeout:30m}") Duration timeout) {
+        this.ring = new Entry[Math.max(replaySize, 1)];
+        this.bufferSize = Math.max(bufferSize, 1);
+        this.timeoutMillis = timeout.toMillis();
+        long period = heartbeatInterval.toMillis();
+        heartbeats.scheduleAtFixedRate(this::heartbeat, period, period, TimeUnit.MILLISECONDS);
+        this.fanOut = Thread.ofPlatform().name("subscription-stream-fan-out").daemon().start(this::fanOutLoop);
+    }
+
+    /**
+     * Регистрирует нового подписчика на поток событий.
+     * Фильтры применяются к каждому событию; null означает отсутствие фильтра.
+     *
+     * @param userId ID пользователя, события которого нужно получать, или null.
+     * @param serviceName название сервиса, события которого нужно получать, или null.
+     * @param lastEventId ID последнего полученного клиентом события или null.
+     * @return SseEmitter для ответа клиенту.
+     */
+    public SseEmitter subscribe(Long userId, String serviceName, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, userId, serviceName, bufferSize);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        commands.add(new Register(subscriber, lastEventId));
+        return emitter;
+    }
+
+    /**
+     * Публикует событие для всех подходящих подписчиков.
+     * Вызывается после фиксации изменения.
+     *
+     * @param event событие изменения подписки.
+     */
+    public void publish(SubscriptionEventDTO event) {
+        commands.add(new Publish(event));
+    }
+
+    /**
+     * Сбрасывает поток после пропуска событий: все подписчики получают событие reset,
+     * а ID ранее отправленных событий перестают приниматься в Last-Event-ID.
+     */
+    public void reset() {
+        commands.add(Reset.INSTANCE);
+    }
+
+    /**
+     * Возвращает количество подключенных подписчиков.
+     *
+     * @return количество подписчиков.
+     */
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("subscription.stream.events", published, AtomicLong::get)
+                .description("Количество опубликованных событий изменения подписок")
+                .register(registry);
+        Gauge.builder("subscription.stream.subscribers", this, SubscriptionEventStream::subscriberCount)
+                .description("Количество подписчиков потока событий")
+                .register(registry);
+        FunctionCounter.builder("subscription.stream.dropped", dropped, AtomicLong::get)
+                .description("Количество подписчиков, отключенных из-за переполнения очереди")
+                .register(registry);
+    }
+
+    /**
+     * Закрывает все соединения и останавливает отправку событий.
+     */
+    @PreDestroy
+    public void close() {
+        fanOut.interrupt();
+        heartbeats.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+        dispatcher.shutdown();
+    }
+
+    private void fanOutLoop() {
+        while (true) {
+            Command command;
+            try {
+                command = commands.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                switch (command) {
+                    case Publish publish -> dispatch(publish.event());
+                    case Register register -> register(register.subscriber(), register.lastEventId());
+                    case Reset reset -> resetSubscribers();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Ошибка при рассылке события потока подписок", e);
+            }
+        }
+    }
+
+    private void dispatch(SubscriptionEventDTO event) {
+        long sequence = ++lastSequence;
+        ring[(int) (sequence % ring.length)] = new Entry(sequence, event);
+        Outgoing outgoing = new Outgoing(idOf(sequence), event);
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.accepts(event)) {
+                continue;
+            }
+            if (subscriber.queue.offer(outgoing)) {
+                schedule(subscriber);
+            } else {
+                drop(subscriber);
+            }
+        }
+        published.incrementAndGet();
+    }
+
+    private void register(Subscriber subscriber, String lastEventId) {
+        if (subscriber.closed) {
+            return;
+        }
+        if (lastEventId != null && !replay(subscriber, lastEventId)) {
+            subscriber.queue.clear();
+            subscriber.queue.offer(Outgoing.RESET);
+        }
+        subscribers.add(subscriber);
+        logger.debug("Новый подписчик потока событий, подписчиков: {}", subscribers.size());
+        schedule(subscriber);
+    }
+
+    private void resetSubscribers() {
+        epoch = Long.toString(System.currentTimeMillis(), 36) + Long.toString(++resets, 36);
+        Arrays.fill(ring, null);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.queue.clear();
+            subscriber.queue.offer(Outgoing.RESET);
+            schedule(subscriber);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+    }
+
+    private boolean replay(Subscriber subscriber, String lastEventId) {
+        int separator = lastEventId.lastIndexOf('-');
+        if (separator < 0 || !epoch.equals(lastEventId.substring(0, separator))) {
+            return false;
+        }
+        long after;
+        try {
+            after = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (after < 0 || after > lastSequence || lastSequence - after > ring.length) {
+            return false;
+        }
+        for (long sequence = after + 1; sequence <= lastSequence; sequence++) {
+            Entry entry = ring[(int) (sequence % ring.length)];
+            if (entry == null) {
+                return false;
+            }
+            if (subscriber.accepts(entry.event())
+                    && !subscriber.queue.offer(new Outgoing(idOf(sequence), entry.event()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.queue.isEmpty() && subscriber.queue.offer(Outgoing.HEARTBEAT)) {
+                schedule(subscriber);
+            }
+        }
+    }
+
+    private void drop(Subscriber subscriber) {
+        remove(subscriber);
+        dropped.incrementAndGet();
+        logger.warn("Подписчик потока событий отключен: очередь из {} событий переполнена", bufferSize);
+        // Завершение соединения может ждать контейнер сервлетов, поэтому выполняется вне потока рассылки.
+        dispatcher.execute(subscriber.emitter::complete);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.closed && subscriber.scheduled.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Outgoing outgoing;
+            while (!subscriber.closed && (outgoing = subscriber.queue.poll()) != null) {
+                subscriber.emitter.send(outgoing.toEvent());
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Клиент отключился: соединение закрывается, подписчик удаляется обработчиками SseEmitter.
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+        if (!subscriber.queue.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    private String idOf(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    private record Entry(long sequence, SubscriptionEventDTO event) {
+    }
+
+    private sealed interface Command permits Publish, Register, Reset {
+    }
+
+    private record Publish(SubscriptionEventDTO event) implements Command {
+    }
+
+    private record Register(Subscriber subscriber, String lastEventId) implements Command {
+    }
+
+    private enum Reset implements Command {
+        INSTANCE
+    }
+
+    private record Outgoing(String id, SubscriptionEventDTO event) {
+
+        static final Outgoing HEARTBEAT = new Outgoing(null, null);
+        static final Outgoing RESET = new Outgoing(null, null);
+
+        SseEmitter.SseEventBuilder toEvent() {
+            if (this == HEARTBEAT) {
+                return SseEmitter.event().comment("");
+            }
+            if (this == RESET) {
+                return SseEmitter.event().name("reset").data("");
+            }
+            return SseEmitter.event().id(id).name(event.getType().name().toLowerCase(Locale.ROOT)).data(event);
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Long userId;
+        private final String serviceName;
+        private final BlockingQueue<Outgoing> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, Long userId, String serviceName, int bufferSize) {
+            this.emitter = emitter;
+            this.userId = userId;
+            this.serviceName = serviceName;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private boolean accepts(SubscriptionEventDTO event) {
+            return (userId == null || userId.equals(event.getUserId()))
+                    && (serviceName == null || Objects.equals(serviceName, event.getServiceName()));
+        }
+    }
+}
@@ -1,27 +1,40 @@
 package ru.freeomsk.subscription.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.freeomsk.subscription.config.ReplicaRoutingDataSource;
 import ru.freeomsk.subscription.dto.SubscriptionDTO;
-import ru.freeomsk.subscription.entity.NameService;
 import ru.freeomsk.subscription.entity.Subscription;
 import ru.freeomsk.subscription.entity.User;
+import ru.freeomsk.subscription.exception.LoadTimeoutException;
 import ru.freeomsk.subscription.exception.SubscriptionNotBelongToUserException;
 import ru.freeomsk.subscription.exception.SubscriptionNotFoundException;
+import ru.freeomsk.subscription.exception.UnsupportedWindowException;
 import ru.freeomsk.subscription.exception.UserNotFoundException;
+import ru.freeomsk.subscription.metrics.MeteredOperation;
 import ru.freeomsk.subscription.repository.ServiceRepository;
 import ru.freeomsk.subscription.repository.SubscriptionRepository;
 import ru.freeomsk.subscription.repository.UserRepository;
+import ru.freeomsk.subscription.sharding.Shards;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Сервис для управления подписками.
+ * Подписки хранятся в шарде своего пользователя.
  */
 @Service
 public class SubscriptionService {
@@ -30,6 +43,17 @@ public class SubscriptionService {
     private final SubscriptionRepository subscriptionRepository;
     private final UserRepository userRepository;
     private final ServiceRepository serviceRepository;
+    private final UserService userService;
+    private final ServiceNameCache serviceNameCache;
+    private final ServicePopularityIndex popularityIndex;
+    private final PopularityRollups rollups;
+    private final SubscriptionVersions versions;
+    private final ReadYourWrites readYourWrites;
+    private final Shards shards;
+    private final InvalidationBus invalidationBus;
+    private final TransactionTemplate writeTransaction;
+    private final int maxTopLimit;
+    private final SingleFlight<UserSubscriptionsKey, List<SubscriptionDTO>> subscriptionLoads;
 
     /**
      * Конструктор для создания экземпляра SubscriptionService.
@@ -37,15 +61,53 @@ public class SubscriptionService {
      * @param subscriptionRepository репозиторий для работы с подписками.
      * @param userRepository репозиторий для работы с пользователями.
      * @param serviceRepository репозиторий для работы с сервисами.
+     * @param userService сервис пользователей.
+     * @param serviceNameCache кэш соответствия названий сервисов их ID.
+     * @param popularityIndex индекс популярности сервисов.
+     * @param rollups агрегаты популярности сервисов за период.
+     * @param versions версии подписок пользователей.
+     * @param readYourWrites окно чтения собственных записей.
+     * @param shards шарды пользователей.
+     * @param invalidationBus шина инвалидации кэшей между узлами.
+     * @param transactionManager менеджер транзакций.
+     * @param meterRegistry реестр метрик.
+     * @param loadTimeout максимальное время ожидания объединенной загрузки подписок.
+     * @param maxTopLimit максимальное количество сервисов в ответе ТОП-N.
      */
-    public SubscriptionService(SubscriptionRepository subscriptionRepository, UserRepository userRepository, ServiceRepository serviceRepository) {
+    public SubscriptionService(SubscriptionRepository subscriptionRepository, UserRepository userRepository,
+                               ServiceRepository serviceRepository, UserService userService,
+                               ServiceNameCache serviceNameCache,
+                               ServicePopularityIndex popularityIndex, PopularityRollups rollups,
+                               SubscriptionVersions versions,
+                               ReadYourWrites readYourWrites, Shards shards,
+                               InvalidationBus invalidationBus, PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${subscription.single-flight.timeout:5s}") Duration loadTimeout,
+                               @Value("${subscription.top.max-limit:100}") int maxTopLimit) {
         this.subscriptionRepository = subscriptionRepository;
         this.userRepository = userRepository;
         this.serviceRepository = serviceRepository;
+        this.userService = userService;
+        this.serviceNameCache = serviceNameCache;
+        this.popularityIndex = popularityIndex;
+        this.rollups = rollups;
+        this.versions = versions;
+        this.readYourWrites = readYourWrites;
+        this.shards = shards;
+        this.invalidationBus = invalidationBus;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.maxTopLimit = Math.max(maxTopLimit, 1);
+        this.subscriptionLoads = new SingleFlight<>("subscription.get", loadTimeout, meterRegistry);
     }
 
     /**
      * Добавляет новую подписку для указанного пользователя.
+     * Операция идемпотентна: если пользователь уже подписан на сервис,
+     * возвращается существующая подписка.
+     * Пользователь не загружается: подписка вставляется по ссылке на его ID,
+     * а отсутствие пользователя определяется по нарушению внешнего ключа.
+     * Вместе со вставкой в той же транзакции читается ее ID, который передается
+     * в изменении для перестроения индексов популярности.
      *
      * @param userId ID пользователя, для которого добавляется подписка.
      * @param subscriptionDTO объект, содержащий данные о подписке.
@@ -53,22 +115,14 @@ public class SubscriptionService {
      * @throws UserNotFoundException если пользователь с указанным ID не найден.
      * @throws DataAccessException если произошла ошибка при доступе к данным.
      */
+    @MeteredOperation("subscription.add")
     public SubscriptionDTO addSubscription(Long userId, SubscriptionDTO subscriptionDTO) {
-        logger.info("Добавление подписки для пользователя с ID: {}", userId);
+        logger.debug("Добавление подписки для пользователя с ID: {}", userId);
         try {
-            User user = userRepository.findById(userId).orElseThrow(() -> new UserNotFoundException(userId));
-            NameService service = serviceRepository.findByServiceName(subscriptionDTO.getServiceName())
-                    .orElseGet(() -> {
-                        NameService newService = new NameService();
-                        newService.setServiceName(subscriptionDTO.getServiceName());
-                        return serviceRepository.save(newService);
-                    });
-
-            Subscription subscription = new Subscription();
-            subscription.setNameService(service);
-            subscription.setUser(user);
-            Subscription createdSubscription = subscriptionRepository.save(subscription);
-            subscriptionDTO.setId(createdSubscription.getId());
+            Long serviceId = serviceNameCache.resolveId(subscriptionDTO.getServiceName());
+            Long subscriptionId = shards.onShardOf(userId,
+                    () -> insertSubscription(userId, serviceId, subscriptionDTO.getServiceName()));
+            subscriptionDTO.setId(subscriptionId);
             subscriptionDTO.setUserId(userId);
             return subscriptionDTO;
         } catch (UserNotFoundException e) {
@@ -80,25 +134,151 @@ public class SubscriptionService {
         }
     }
 
+    private Long insertSubscription(Long userId, Long serviceId, String serviceName) {
+        Subscription subscription = new Subscription();
+        subscription.setNameService(serviceRepository.getReferenceById(serviceId));
+        subscription.setUser(userRepository.getReferenceById(userId));
+        try {
+            return writeTransaction.execute(status -> {
+                Subscription saved = subscriptionRepository.saveAndFlush(subscription);
+                Long subscriptionId = saved.getId();
+                List<InvalidationEvent> changes = List.of(InvalidationEvent.subscriptionAdded(userId, subscriptionId,
+                        serviceName, epochSecond(saved), subscriptionRepository.currentTransactionId()));
+                AfterCommit.run(() -> invalidationBus.publish(changes));
+                return subscriptionId;
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (Constraints.isViolated(e, Subscription.USER_FOREIGN_KEY)) {
+                throw new UserNotFoundException(userId);
+            }
+            if (!Constraints.isViolated(e, Subscription.USER_SERVICE_CONSTRAINT)) {
+                throw e;
+            }
+            // Пользователь уже подписан на сервис: повторное добавление возвращает существующую подписку.
+            // Подписка могла быть только что добавлена и еще не дойти до реплики, поэтому чтение идет на основной узел.
+            return ReplicaRoutingDataSource.onPrimary(() -> subscriptionRepository.findIdByUserIdAndServiceId(userId, serviceId))
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Добавляет пользователю несколько подписок в одной транзакции на основном узле.
+     * Отсутствующие в кэше сервисы находятся или создаются одним запросом до начала
+     * транзакции, а подписки вставляются одним пакетом JDBC.
+     * Повторяющиеся имена сервисов учитываются один раз, для уже существующих
+     * подписок возвращаются их данные без повторной вставки.
+     *
+     * @param userId ID пользователя, для которого добавляются подписки.
+     * @param serviceNames названия сервисов.
+     * @return список объектов SubscriptionDTO с данными о созданных подписках.
+     * @throws UserNotFoundException если пользователь с указанным ID не найден.
+     * @throws DataAccessException если произошла ошибка при доступе к данным.
+     */
+    @MeteredOperation("subscription.add_batch")
+    public List<SubscriptionDTO> addSubscriptions(Long userId, List<String> serviceNames) {
+        logger.debug("Пакетное добавление {} подписок для пользователя с ID: {}", serviceNames.size(), userId);
+        try {
+            Set<String> names = new LinkedHashSet<>(serviceNames);
+            return shards.onShardOf(userId, () -> {
+                if (!ReplicaRoutingDataSource.onPrimary(() -> userRepository.existsById(userId))) {
+                    throw new UserNotFoundException(userId);
+                }
+                Map<String, Long> serviceIds = serviceNameCache.resolveIds(names);
+                try {
+                    return writeTransaction.execute(status -> insertMissing(userId, names, serviceIds));
+                } catch (DataIntegrityViolationException e) {
+                    if (Constraints.isViolated(e, Subscription.USER_FOREIGN_KEY)) {
+                        throw new UserNotFoundException(userId);
+                    }
+                    if (!Constraints.isViolated(e, Subscription.USER_SERVICE_CONSTRAINT)) {
+                        throw e;
+                    }
+                    // Параллельный запрос добавил часть подписок после проверки: повторяем один раз в новой транзакции.
+                    return writeTransaction.execute(status -> insertMissing(userId, names, serviceIds));
+                }
+            });
+        } catch (UserNotFoundException e) {
+            logger.error("Пользователь с ID: {} не найден", userId, e);
+            throw e;
+        } catch (DataAccessException e) {
+            logger.error("Ошибка при пакетном добавлении подписок для пользователя с ID: {}", userId, e);
+            throw new RuntimeException("Ошибка при добавлении подписок", e);
+        }
+    }
+
+    private List<SubscriptionDTO> insertMissing(Long userId, Set<String> names, Map<String, Long> serviceIds) {
+        if (names.isEmpty()) {
+            return List.of();
+        }
+        User user = userRepository.getReferenceById(userId);
+        Map<String, SubscriptionDTO> subscriptionsByName = new HashMap<>();
+        for (SubscriptionDTO existing : subscriptionRepository.findDTOsByUserIdAndServiceIds(userId, serviceIds.values())) {
+            subscriptionsByName.put(existing.getServiceName(), existing);
+        }
+
+        List<String> added = new ArrayList<>(names.size());
+        List<Subscription> subscriptions = new ArrayList<>(names.size());
+        for (String name : names) {
+            if (subscriptionsByName.containsKey(name)) {
+                continue;
+            }
+            Subscription subscription = new Subscription();
+            subscription.setNameService(serviceRepository.getReferenceById(serviceIds.get(name)));
+            subscription.setUser(user);
+            subscriptions.add(subscription);
+            added.add(name);
+        }
+        if (!subscriptions.isEmpty()) {
+            subscriptionRepository.saveAllAndFlush(subscriptions);
+            Long transactionId = subscriptionRepository.currentTransactionId();
+            List<InvalidationEvent> changes = new ArrayList<>(added.size());
+            for (int i = 0; i < added.size(); i++) {
+                changes.add(InvalidationEvent.subscriptionAdded(userId, subscriptions.get(i).getId(),
+                        added.get(i), epochSecond(subscriptions.get(i)), transactionId));
+            }
+            AfterCommit.run(() -> invalidationBus.publish(changes));
+        }
+
+        for (int i = 0; i < added.size(); i++) {
+            subscriptionsByName.put(added.get(i), new SubscriptionDTO(subscriptions.get(i).getId(), added.get(i), userId));
+        }
+        List<SubscriptionDTO> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            result.add(subscriptionsByName.get(name));
+        }
+        return result;
+    }
+
     /**
      * Получает список подписок для указанного пользователя.
+     * Подписки читаются одним запросом-проекцией; существование пользователя
+     * проверяется дополнительным запросом только при пустом результате.
+     * При настроенных репликах чтение выполняется на реплике, кроме окна
+     * после изменения подписок пользователя.
+     * Одновременные запросы подписок одного пользователя при одной версии подписок
+     * выполняют один запрос к базе данных и получают общий неизменяемый результат.
      *
      * @param userId ID пользователя, для которого нужно получить подписки.
      * @return список объектов SubscriptionDTO, представляющих подписки пользователя.
      * @throws UserNotFoundException если пользователь с указанным ID не найден.
+     * @throws LoadTimeoutException если объединенная загрузка не завершилась за время ожидания.
      * @throws DataAccessException если произошла ошибка при доступе к данным.
      */
+    @MeteredOperation("subscription.get")
     public List<SubscriptionDTO> getUserSubscriptions(Long userId) {
-        logger.info("Получение подписок для пользователя с ID: {}", userId);
+        logger.debug("Получение подписок для пользователя с ID: {}", userId);
         try {
-            User user = userRepository.findById(userId).orElseThrow(() -> new UserNotFoundException(userId));
-            return user.getSubscriptions().stream().map(subscription -> {
-                SubscriptionDTO subscriptionDTO = new SubscriptionDTO();
-                subscriptionDTO.setId(subscription.getId());
-                subscriptionDTO.setServiceName(subscription.getNameService().getServiceName());
-                subscriptionDTO.setUserId(subscription.getUser().getId());
-                return subscriptionDTO;
-            }).collect(Collectors.toList());
+            UserSubscriptionsKey key = new UserSubscriptionsKey(userId, versions.userVersion(userId));
+            return subscriptionLoads.execute(key, () -> shards.onShardOf(userId, () -> readYourWrites.read(userId, () -> {
+                List<SubscriptionDTO> subscriptions = subscriptionRepository.findDTOsByUserId(userId);
+                if (subscriptions.isEmpty() && !userRepository.existsById(userId)) {
+                    throw new UserNotFoundException(userId);
+                }
+                return List.copyOf(subscriptions);
+            })));
+        } catch (LoadTimeoutException e) {
+            logger.warn("Превышено время ожидания загрузки подписок пользователя с ID: {}", userId);
+            throw e;
         } catch (UserNotFoundException e) {
             logger.error("Пользователь с ID: {} не найден", userId, e);
             throw e;
@@ -108,6 +288,23 @@ public class SubscriptionService {
         }
     }
 
+    /**
+     * Возвращает версию набора подписок пользователя без чтения подписок.
+     * Версия меняется при каждом добавлении и удалении подписок пользователя.
+     * Существование пользователя проверяется через кэш пользователей, поэтому
+     * условный запрос для отсутствующего пользователя не получает 304 Not Modified.
+     *
+     * @param userId ID пользователя.
+     * @return версия подписок пользователя для заголовка ETag.
+     * @throws UserNotFoundException если пользователь с указанным ID не найден.
+     */
+    public String getUserSubscriptionsVersion(Long userId) {
+        if (!userService.exists(userId)) {
+            throw new UserNotFoundException(userId);
+        }
+        return versions.userVersion(userId);
+    }
+
     /**
      * Удаляет подписку для указанного пользователя.
      *
@@ -117,15 +314,23 @@ public class SubscriptionService {
      * @throws SubscriptionNotBelongToUserException если подписка не принадлежит указанному пользователю.
      * @throws DataAccessException если произошла ошибка при доступе к данным.
      */
+    @MeteredOperation("subscription.delete")
     public void deleteSubscription(Long userId, Long subscriptionId) {
-        logger.info("Удаление подписки с ID: {} для пользователя с ID: {}", subscriptionId, userId);
+        logger.debug("Удаление подписки с ID: {} для пользователя с ID: {}", subscriptionId, userId);
         try {
-            Subscription subscription = subscriptionRepository.findById(subscriptionId)
-                    .orElseThrow(() -> new SubscriptionNotFoundException("Подписка с ID: " + subscriptionId + " не найдена"));
-            if (!subscription.getUser().getId().equals(userId)) {
+            List<Object[]> deleted = shards.onShardOf(userId, () -> subscriptionRepository.deleteOwned(subscriptionId, userId));
+            if (deleted.isEmpty()) {
+                // Владелец проверяется на основном узле: отстающая реплика может еще не знать о подписке.
+                if (shards.onShardOf(subscriptionId, () -> ReplicaRoutingDataSource.onPrimary(
+                        () -> subscriptionRepository.findUserIdById(subscriptionId))).isEmpty()) {
+                    throw new SubscriptionNotFoundException("Подписка с ID: " + subscriptionId + " не найдена");
+                }
                 throw new SubscriptionNotBelongToUserException(subscriptionId, userId);
             }
-            subscriptionRepository.delete(subscription);
+            List<InvalidationEvent> changes = List.of(InvalidationEvent.subscriptionDeleted(userId, subscriptionId,
+                    (String) deleted.get(0)[0], InvalidationEvent.epochSecond(deleted.get(0)[1]),
+                    InvalidationEvent.transactionId(deleted.get(0)[2])));
+            AfterCommit.run(() -> invalidationBus.publish(changes));
         } catch (SubscriptionNotFoundException | SubscriptionNotBelongToUserException e) {
             logger.error("Ошибка при удалении подписки с ID: {} для пользователя с ID: {}", subscriptionId, userId, e);
             throw e;
@@ -137,30 +342,71 @@ public class SubscriptionService {
 
     /**
      * Получает популярные подписки по количеству.
+     * Результат формируется из индекса популярности без обращения к базе данных.
      *
+     * @param limit максимальное количество сервисов в ответе, ограничивается диапазоном
+     * от 1 до subscription.top.max-limit.
      * @return список названий популярных подписок.
      * @throws SubscriptionNotFoundException если подписки не найдены.
-     * @throws DataAccessException если произошла ошибка при доступе к данным.
      */
-    public List<String> getTopSubscriptions() {
-        logger.info("Получение популярных подписок по количеству");
+    @MeteredOperation("subscription.top")
+    public List<String> getTopSubscriptions(int limit) {
+        logger.debug("Получение {} популярных подписок по количеству", limit);
         try {
-            Pageable topThree = PageRequest.of(0, 3);
-            List<Object[]> results = subscriptionRepository.findTop3Subscriptions(topThree);
+            List<String> results = popularityIndex.top(topLimit(limit));
 
             if (results.isEmpty()) {
                 throw new SubscriptionNotFoundException("Подписки не найдены");
             }
 
-            return results.stream()
-                    .map(result -> (String) result[0]) // Извлечение serviceName
-                    .collect(Collectors.toList());
+            return results;
         } catch (SubscriptionNotFoundException e) {
             logger.error("Подписки не найдены", e);
             throw e;
-        } catch (DataAccessException e) {
-            logger.error("Ошибка при получении популярных подписок", e);
-            throw new RuntimeException("Ошибка при получении популярных подписок", e);
         }
     }
+
+    /**
+     * Получает сервисы, на которые чаще всего подписывались за период.
+     * Результат формируется из почасовых и суточных агрегатов без обращения к базе данных;
+     * учитываются подписки, созданные за период и не удаленные к моменту запроса.
+     *
+     * @param window период: 1h, 24h или 7d.
+     * @param limit максимальное количество сервисов в ответе, ограничивается диапазоном
+     * от 1 до subscription.top.max-limit.
+     * @return список названий популярных подписок за период.
+     * @throws UnsupportedWindowException если период не поддерживается.
+     * @throws SubscriptionNotFoundException если за период подписки не найдены.
+     */
+    @MeteredOperation("subscription.top_window")
+    public List<String> getTopSubscriptions(String window, int limit) {
+        logger.debug("Получение {} популярных подписок за период {}", limit, window);
+        try {
+            List<String> results = rollups.top(PopularityWindow.fromValue(window), topLimit(limit));
+
+            if (results.isEmpty()) {
+                throw new SubscriptionNotFoundException("Подписки за период " + window + " не найдены");
+            }
+
+            return results;
+        } catch (UnsupportedWindowException | SubscriptionNotFoundException e) {
+            logger.error("Ошибка при получении популярных подписок за период {}", window, e);
+            throw e;
+        }
+    }
+
+    private int topLimit(int limit) {
+        return Math.min(Math.max(limit, 1), maxTopLimit);
+    }
+
+    private static Long epochSecond(Subscription subscription) {
+        return subscription.getCreatedAt() == null ? null : subscription.getCreatedAt().getEpochSecond();
+    }
+
+    /**
+     * Ключ загрузки подписок: изменение подписок пользователя меняет версию,
+     * поэтому запрос после изменения не присоединяется к загрузке, начатой до него.
+     */
+    private record UserSubscriptionsKey(Long userId, String version) {
+    }
 }
\ No newline at end of file
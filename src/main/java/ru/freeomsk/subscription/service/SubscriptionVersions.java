@@ -0,0 +1,73 @@
+package ru.freeomsk.subscription.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версии наборов подписок пользователей для условных GET-запросов.
+ * Каждое изменение подписок пользователя присваивает ему следующее значение
+ * общего счетчика. Версии хранятся в ограниченном кэше; для вытесненных
+ * пользователей используется нижняя граница - максимальная вытесненная версия,
+ * поэтому версия пользователя никогда не возвращается к значению, выданному
+ * до его последнего изменения. Эпоха запуска исключает совпадение версий
+ * после перезапуска приложения, а смена эпохи при пропуске изменений
+ * с других узлов меняет версии всех пользователей.
+ */
+@Component
+public class SubscriptionVersions {
+
+    private final AtomicLong resets = new AtomicLong();
+    private volatile String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong floor = new AtomicLong();
+    private final Cache<Long, Long> versions;
+
+    /**
+     * Конструктор для создания экземпляра SubscriptionVersions.
+     *
+     * @param maximumSize максимальное количество пользователей с отдельной версией.
+     */
+    public SubscriptionVersions(@Value("${subscription.versions.maximum-size:100000}") long maximumSize) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .evictionListener((Long userId, Long version, RemovalCause cause) ->
+                        floor.accumulateAndGet(version, Math::max))
+                .build();
+    }
+
+    /**
+     * Возвращает текущую версию подписок пользователя.
+     * Версию нужно читать до запроса данных: тогда изменение, зафиксированное
+     * во время запроса, приведет к новой версии при следующем обращении.
+     *
+     * @param userId ID пользователя.
+     * @return строковая версия, пригодная для заголовка ETag.
+     */
+    public String userVersion(Long userId) {
+        Long version = versions.getIfPresent(userId);
+        return epoch + "-" + (version != null ? version : floor.get());
+    }
+
+    /**
+     * Отмечает изменение подписок пользователя. Вызывается после фиксации изменения.
+     *
+     * @param userId ID пользователя.
+     */
+    public void userChanged(Long userId) {
+        versions.put(userId, sequence.incrementAndGet());
+    }
+
+    /**
+     * Меняет версии подписок всех пользователей. Вызывается, если изменения с других узлов могли быть пропущены.
+     */
+    public void invalidateAll() {
+        epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX)
+                + "." + Long.toString(resets.incrementAndGet(), Character.MAX_RADIX);
+        versions.invalidateAll();
+    }
+}
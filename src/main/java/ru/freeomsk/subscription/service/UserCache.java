@@ -0,0 +1,95 @@
+package ru.freeomsk.subscription.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.freeomsk.subscription.dto.UserDTO;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Ограниченный кэш пользователей по ID со сквозным чтением.
+ * Записи вытесняются по размеру и по времени жизни; отсутствующие ID кэшируются
+ * с коротким временем жизни. Параллельные загрузки одного ID объединяются,
+ * а инвалидация ожидает завершения текущей загрузки, поэтому после записи
+ * устаревшее значение в кэше не остается.
+ * Попадания, промахи и время загрузки публикуются как метрики кэша users.
+ */
+@Component
+public class UserCache implements MeterBinder {
+
+    private final Cache<Long, Optional<UserDTO>> cache;
+
+    /**
+     * Конструктор для создания экземпляра UserCache.
+     *
+     * @param maximumSize максимальное количество пользователей в кэше.
+     * @param timeToLive время жизни записи о найденном пользователе.
+     * @param negativeTimeToLive время жизни записи об отсутствующем пользователе.
+     */
+    public UserCache(@Value("${subscription.user-cache.maximum-size:100000}") long maximumSize,
+                     @Value("${subscription.user-cache.time-to-live:10m}") Duration timeToLive,
+                     @Value("${subscription.user-cache.negative-time-to-live:5s}") Duration negativeTimeToLive) {
+        long positiveNanos = timeToLive.toNanos();
+        long negativeNanos = negativeTimeToLive.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Long, Optional<UserDTO>>() {
+                    @Override
+                    public long expireAfterCreate(Long id, Optional<UserDTO> user, long currentTime) {
+                        return user.isPresent() ? positiveNanos : negativeNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, Optional<UserDTO> user, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, user, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, Optional<UserDTO> user, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Возвращает пользователя из кэша, загружая его при отсутствии.
+     *
+     * @param id ID пользователя.
+     * @param loader функция загрузки пользователя из базы данных.
+     * @return копия данных пользователя или пустой Optional, если пользователь не найден.
+     */
+    public Optional<UserDTO> get(Long id, Function<Long, Optional<UserDTO>> loader) {
+        return cache.get(id, loader).map(user -> new UserDTO(user.getId(), user.getName(), user.getEmail()));
+    }
+
+    /**
+     * Удаляет пользователя из кэша. Вызывается после фиксации изменения.
+     *
+     * @param id ID пользователя.
+     */
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    /**
+     * Удаляет из кэша всех пользователей. Вызывается, если изменения с других узлов могли быть пропущены.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "users");
+    }
+}
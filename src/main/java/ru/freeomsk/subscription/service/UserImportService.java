@@ -0,0 +1,414 @@
+package ru.freeomsk.subscription.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.freeomsk.subscription.dto.ImportErrorDTO;
+import ru.freeomsk.subscription.dto.ImportResultDTO;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.exception.OperationNotSupportedException;
+import ru.freeomsk.subscription.sharding.Shards;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервис массового импорта пользователей из потока CSV или NDJSON.
+ * Строки читаются и загружаются порциями, поэтому потребление памяти не зависит от объема данных.
+ * В PostgreSQL порция загружается протоколом COPY во временную таблицу и переносится в users
+ * одним запросом INSERT ... ON CONFLICT DO NOTHING, в остальных СУБД используется пакетная вставка.
+ * Ошибка в отдельной строке не прерывает загрузку: если порция не сохраняется целиком,
+ * она делится пополам до тех пор, пока ошибочные строки не будут найдены по одной.
+ * Строки длиннее {@value #MAX_LINE_LENGTH} символов отклоняются без чтения в память целиком.
+ * После сохранения порции ID загруженных пользователей публикуются в шину инвалидации.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+    private static final int CHUNK_SIZE = 5000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_VALUE_LENGTH = 255;
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    private static final String CREATE_STAGING_SQL = "CREATE TEMP TABLE IF NOT EXISTS users_import " +
+            "(line_no bigint, name varchar(255), email varchar(255)) ON COMMIT DELETE ROWS";
+    private static final String COPY_SQL = "COPY users_import (line_no, name, email) FROM STDIN WITH (FORMAT csv)";
+    private static final String MERGE_SQL = "INSERT INTO users (name, email) " +
+            "SELECT DISTINCT ON (email) name, email FROM users_import ORDER BY email, line_no " +
+            "ON CONFLICT (email) DO NOTHING RETURNING id, email";
+    private static final String EXISTING_SQL = "SELECT email FROM users WHERE email IN (:emails)";
+    private static final String IDS_SQL = "SELECT id, email FROM users WHERE email IN (:emails)";
+    private static final String INSERT_SQL = "INSERT INTO users (name, email) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Shards shards;
+    private final InvalidationBus invalidationBus;
+    private volatile Boolean copySupported;
+
+    /**
+     * Конструктор для создания экземпляра UserImportService.
+     *
+     * @param jdbcTemplate шаблон для выполнения JDBC-запросов.
+     * @param transactionManager менеджер транзакций.
+     * @param objectMapper преобразователь JSON.
+     * @param shards шарды пользователей.
+     * @param invalidationBus шина инвалидации кэшей между узлами.
+     */
+    public UserImportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper, Shards shards, InvalidationBus invalidationBus) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.shards = shards;
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * Импортирует пользователей из потока данных.
+     * CSV ожидается в виде строк "name,email" с необязательной строкой заголовка,
+     * NDJSON - в виде объектов с полями name и email, по одному в строке.
+     *
+     * @param input поток данных.
+     * @param contentType формат данных: text/csv или application/x-ndjson.
+     * @return итоги импорта: количество строк, ошибки по строкам и скорость загрузки.
+     * @throws OperationNotSupportedException если пользователи распределены по шардам.
+     */
+    public ImportResultDTO importUsers(InputStream input, MediaType contentType) {
+        if (shards.isSharded()) {
+            // Строки вставляются с ID по умолчанию, который не кодирует номер шарда.
+            throw new OperationNotSupportedException("Импорт пользователей недоступен при шардировании");
+        }
+        logger.info("Импорт пользователей в формате: {}", contentType);
+        boolean ndjson = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType);
+        ImportResultDTO result = new ImportResultDTO();
+        long started = System.nanoTime();
+        try (LineReader reader = new LineReader(new InputStreamReader(input, StandardCharsets.UTF_8), MAX_LINE_LENGTH)) {
+            List<ImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (reader.isTruncated()) {
+                    result.setTotalRows(result.getTotalRows() + 1);
+                    reportError(result, lineNumber, "Длина строки превышает " + MAX_LINE_LENGTH + " символов");
+                    continue;
+                }
+                if (line.isBlank() || (!ndjson && lineNumber == 1 && isCsvHeader(line))) {
+                    continue;
+                }
+                result.setTotalRows(result.getTotalRows() + 1);
+                try {
+                    chunk.add(ndjson ? parseJson(lineNumber, line) : parseCsv(lineNumber, line));
+                } catch (IllegalArgumentException e) {
+                    reportError(result, lineNumber, e.getMessage());
+                    continue;
+                }
+                if (chunk.size() == CHUNK_SIZE) {
+                    loadChunk(chunk, result);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                loadChunk(chunk, result);
+            }
+        } catch (IOException e) {
+            logger.error("Ошибка чтения данных при импорте пользователей", e);
+            throw new RuntimeException("Ошибка при импорте пользователей", e);
+        }
+        long elapsedNanos = System.nanoTime() - started;
+        result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        result.setRowsPerSecond(elapsedNanos > 0 ? result.getImportedRows() * 1_000_000_000.0 / elapsedNanos : 0);
+        logger.info("Импорт пользователей завершен: загружено {}, ошибок {}, {} строк/с",
+                result.getImportedRows(), result.getFailedRows(), Math.round(result.getRowsPerSecond()));
+        return result;
+    }
+
+    private void loadChunk(List<ImportRow> chunk, ImportResultDTO result) {
+        Map<Long, Long> imported;
+        try {
+            boolean copy = isCopySupported();
+            imported = transactionTemplate.execute(status -> copy
+                    ? jdbcTemplate.execute((ConnectionCallback<Map<Long, Long>>) connection -> copyChunk(connection, chunk))
+                    : insertChunk(chunk));
+        } catch (DataAccessException e) {
+            if (chunk.size() == 1) {
+                logger.warn("Ошибка при загрузке строки {}", chunk.get(0).line(), e);
+                reportError(result, chunk.get(0).line(), "Ошибка при сохранении в базу данных");
+                return;
+            }
+            // Порция откатывается целиком: загружаем ее половины отдельно, чтобы найти ошибочные строки.
+            logger.warn("Ошибка при загрузке строк {}-{}, порция загружается по частям",
+                    chunk.get(0).line(), chunk.get(chunk.size() - 1).line(), e);
+            int middle = chunk.size() / 2;
+            loadChunk(chunk.subList(0, middle), result);
+            loadChunk(chunk.subList(middle, chunk.size()), result);
+            return;
+        }
+        List<InvalidationEvent> changes = new ArrayList<>(chunk.size());
+        for (ImportRow row : chunk) {
+            Long userId = imported == null ? null : imported.get(row.line());
+            if (userId != null) {
+                result.setImportedRows(result.getImportedRows() + 1);
+                changes.add(InvalidationEvent.userChanged(userId));
+            } else {
+                reportError(result, row.line(), "Пользователь с email " + row.email() + " уже существует");
+            }
+        }
+        if (!changes.isEmpty()) {
+            AfterCommit.run(() -> invalidationBus.publish(changes));
+        }
+    }
+
+    private Map<Long, Long> copyChunk(Connection connection, List<ImportRow> chunk) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING_SQL);
+        }
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        try {
+            copyManager.copyIn(COPY_SQL, new StringReader(toCsv(chunk)));
+        } catch (IOException e) {
+            throw new SQLException("Ошибка передачи данных COPY", e);
+        }
+        Map<String, Long> firstLineByEmail = new HashMap<>();
+        chunk.forEach(row -> firstLineByEmail.putIfAbsent(row.email(), row.line()));
+        Map<Long, Long> imported = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(MERGE_SQL)) {
+            while (resultSet.next()) {
+                imported.put(firstLineByEmail.get(resultSet.getString(2)), resultSet.getLong(1));
+            }
+        }
+        return imported;
+    }
+
+    private Map<Long, Long> insertChunk(List<ImportRow> chunk) {
+        Map<String, ImportRow> rowsByEmail = new LinkedHashMap<>();
+        chunk.forEach(row -> rowsByEmail.putIfAbsent(row.email(), row));
+        List<String> existing = namedParameterJdbcTemplate.queryForList(EXISTING_SQL,
+                Map.of("emails", List.copyOf(rowsByEmail.keySet())), String.class);
+        existing.forEach(rowsByEmail::remove);
+        List<ImportRow> rows = new ArrayList<>(rowsByEmail.values());
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, CHUNK_SIZE, (statement, row) -> {
+            statement.setString(1, row.name());
+            statement.setString(2, row.email());
+        });
+        Map<Long, Long> imported = new HashMap<>();
+        if (rows.isEmpty()) {
+            return imported;
+        }
+        Map<String, Long> idsByEmail = new HashMap<>();
+        namedParameterJdbcTemplate.query(IDS_SQL, Map.of("emails", rows.stream().map(ImportRow::email).toList()),
+                resultSet -> {
+                    idsByEmail.put(resultSet.getString("email"), resultSet.getLong("id"));
+                });
+        rows.forEach(row -> imported.put(row.line(), idsByEmail.get(row.email())));
+        return imported;
+    }
+
+    private boolean isCopySupported() {
+        Boolean supported = copySupported;
+        if (supported == null) {
+            supported = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.isWrapperFor(PGConnection.class));
+            copySupported = supported;
+        }
+        return Boolean.TRUE.equals(supported);
+    }
+
+    private ImportRow parseCsv(long lineNumber, String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != 2) {
+            throw new IllegalArgumentException("Ожидается два поля: name,email");
+        }
+        return validate(lineNumber, fields.get(0), fields.get(1));
+    }
+
+    private ImportRow parseJson(long lineNumber, String line) {
+        try {
+            UserDTO user = objectMapper.readValue(line, UserDTO.class);
+            return validate(lineNumber, user.getName(), user.getEmail());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Некорректный JSON");
+        }
+    }
+
+    private static ImportRow validate(long lineNumber, String name, String email) {
+        String trimmedName = name == null ? "" : name.trim();
+        String trimmedEmail = email == null ? "" : email.trim();
+        if (trimmedName.isEmpty()) {
+            throw new IllegalArgumentException("Не указано имя пользователя");
+        }
+        if (trimmedEmail.isEmpty() || trimmedEmail.indexOf('@') <= 0) {
+            throw new IllegalArgumentException("Некорректный email");
+        }
+        if (trimmedName.length() > MAX_VALUE_LENGTH || trimmedEmail.length() > MAX_VALUE_LENGTH) {
+            throw new IllegalArgumentException("Длина имени или email превышает " + MAX_VALUE_LENGTH + " символов");
+        }
+        return new ImportRow(lineNumber, trimmedName, trimmedEmail);
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.replace(" ", "").equalsIgnoreCase("name,email");
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Незакрытая кавычка в строке CSV");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String toCsv(List<ImportRow> chunk) {
+        StringBuilder csv = new StringBuilder(chunk.size() * 64);
+        for (ImportRow row : chunk) {
+            csv.append(row.line()).append(',');
+            appendQuoted(csv, row.name());
+            csv.append(',');
+            appendQuoted(csv, row.email());
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static void appendQuoted(StringBuilder csv, String value) {
+        csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static void reportError(ImportResultDTO result, long line, String reason) {
+        result.setFailedRows(result.getFailedRows() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new ImportErrorDTO(line, reason));
+        }
+    }
+
+    private record ImportRow(long line, String name, String email) {
+    }
+
+    /**
+     * Построчное чтение с ограничением длины строки. Символы сверх ограничения
+     * пропускаются до конца строки, а строка помечается как усеченная.
+     */
+    private static final class LineReader implements AutoCloseable {
+
+        private final Reader reader;
+        private final int maxLength;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private boolean truncated;
+
+        private LineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Читает следующую строку без символов конца строки.
+         *
+         * @return строка, не длиннее ограничения, или null в конце потока.
+         * @throws IOException если произошла ошибка чтения.
+         */
+        private String readLine() throws IOException {
+            line.setLength(0);
+            truncated = false;
+            boolean read = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return read ? finish() : null;
+                    }
+                }
+                read = true;
+                char c = buffer[position++];
+                if (c == '\n') {
+                    return finish();
+                }
+                if (line.length() < maxLength || (c == '\r' && line.length() == maxLength)) {
+                    line.append(c);
+                } else {
+                    truncated = true;
+                }
+            }
+        }
+
+        /**
+         * Проверяет, была ли последняя прочитанная строка длиннее ограничения.
+         *
+         * @return true, если строка усечена.
+         */
+        private boolean isTruncated() {
+            return truncated;
+        }
+
+        private String finish() {
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(length - 1);
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
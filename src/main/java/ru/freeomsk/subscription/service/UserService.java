@@ -3,32 +3,69 @@ package ru.freeomsk.subscription.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.dto.UserPageDTO;
 import ru.freeomsk.subscription.exception.UserNotFoundException;
 import ru.freeomsk.subscription.entity.User;
+import ru.freeomsk.subscription.metrics.MeteredOperation;
+import ru.freeomsk.subscription.repository.SubscriptionRepository;
 import ru.freeomsk.subscription.repository.UserRepository;
+import ru.freeomsk.subscription.sharding.Shards;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Сервис для управления пользователями.
+ * Операции пользователя выполняются в его шарде, список пользователей
+ * собирается из всех шардов.
  */
 @Service
 public class UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+    private static final int MAX_PAGE_SIZE = 1000;
     private final UserRepository userRepository;
+    private final SubscriptionRepository subscriptionRepository;
+    private final UserCache userCache;
+    private final ReadYourWrites readYourWrites;
+    private final Shards shards;
+    private final InvalidationBus invalidationBus;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate writeTransaction;
 
     /**
      * Конструктор для создания нового экземпляра UserService с заданным репозиторием.
      *
      * @param userRepository репозиторий пользователей.
+     * @param subscriptionRepository репозиторий подписок.
+     * @param userCache кэш пользователей.
+     * @param readYourWrites окно чтения собственных записей.
+     * @param shards шарды пользователей.
+     * @param invalidationBus шина инвалидации кэшей между узлами.
+     * @param transactionManager менеджер транзакций.
      */
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, SubscriptionRepository subscriptionRepository,
+                       UserCache userCache, ReadYourWrites readYourWrites, Shards shards,
+                       InvalidationBus invalidationBus, PlatformTransactionManager transactionManager) {
         this.userRepository = userRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.userCache = userCache;
+        this.readYourWrites = readYourWrites;
+        this.shards = shards;
+        this.invalidationBus = invalidationBus;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -38,13 +75,15 @@ public class UserService {
      * @return созданный пользователь.
      * @throws DataAccessException если произошла ошибка при доступе к данным.
      */
+    @MeteredOperation("user.create")
     public UserDTO createUser(UserDTO userDTO) {
-        logger.info("Создание пользователя: {}", userDTO);
+        logger.debug("Создание пользователя: {}", userDTO);
         try {
             User user = new User();
             user.setName(userDTO.getName());
             user.setEmail(userDTO.getEmail());
-            User createdUser = userRepository.save(user);
+            User createdUser = shards.onShardOfEmail(user.getEmail(), () -> userRepository.save(user));
+            AfterCommit.run(() -> invalidationBus.publish(List.of(InvalidationEvent.userChanged(createdUser.getId()))));
             userDTO.setId(createdUser.getId());
             return userDTO;
         } catch (DataAccessException e) {
@@ -54,30 +93,39 @@ public class UserService {
     }
 
     /**
-     * Получает пользователя по ID.
+     * Получает пользователя по ID. Данные читаются через кэш пользователей.
      *
      * @param id ID пользователя.
      * @return Optional с данными пользователя, если он найден.
      * @throws DataAccessException если произошла ошибка при доступе к данным.
      */
+    @MeteredOperation("user.get")
     public Optional<UserDTO> getUserById(Long id) {
-        logger.info("Получение пользователя с ID: {}", id);
+        logger.debug("Получение пользователя с ID: {}", id);
         try {
-            return userRepository.findById(id).map(user -> {
-                UserDTO userDTO = new UserDTO();
-                userDTO.setId(user.getId());
-                userDTO.setName(user.getName());
-                userDTO.setEmail(user.getEmail());
-                return userDTO;
-            });
+            return userCache.get(id, key -> shards.onShardOf(key, () -> readYourWrites.read(key,
+                    () -> userRepository.findById(key).map(UserService::toDTO))));
         } catch (DataAccessException e) {
             logger.error("Ошибка при получении пользователя с ID: {}", id, e);
             throw new RuntimeException("Ошибка при получении пользователя", e);
         }
     }
 
+    /**
+     * Проверяет существование пользователя через кэш пользователей.
+     *
+     * @param id ID пользователя.
+     * @return true, если пользователь существует.
+     * @throws DataAccessException если произошла ошибка при доступе к данным.
+     */
+    public boolean exists(Long id) {
+        return getUserById(id).isPresent();
+    }
+
     /**
      * Обновляет данные пользователя.
+     * Пользователь читается и сохраняется в одной транзакции на основном узле,
+     * поэтому отставание реплики не приводит к ложному отсутствию пользователя.
      *
      * @param id ID пользователя.
      * @param userDTO новые данные пользователя.
@@ -85,13 +133,17 @@ public class UserService {
      * @throws UserNotFoundException если пользователь с указанным ID не найден.
      * @throws DataAccessException если произошла ошибка при доступе к данным.
      */
+    @MeteredOperation("user.update")
     public UserDTO updateUser(Long id, UserDTO userDTO) {
-        logger.info("Обновление пользователя с ID: {}", id);
+        logger.debug("Обновление пользователя с ID: {}", id);
         try {
-            User user = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException(id));
-            user.setName(userDTO.getName());
-            user.setEmail(userDTO.getEmail());
-            User updatedUser = userRepository.save(user);
+            User updatedUser = shards.onShardOf(id, () -> writeTransaction.execute(status -> {
+                User user = userRepository.findById(id).orElseThrow(() -> new UserNotFoundException(id));
+                user.setName(userDTO.getName());
+                user.setEmail(userDTO.getEmail());
+                return userRepository.save(user);
+            }));
+            AfterCommit.run(() -> invalidationBus.publish(List.of(InvalidationEvent.userChanged(id))));
             userDTO.setId(updatedUser.getId());
             return userDTO;
         } catch (UserNotFoundException e) {
@@ -104,19 +156,35 @@ public class UserService {
     }
 
     /**
-     * Удаляет пользователя по ID.
+     * Удаляет пользователя по ID вместе с его подписками.
+     * Подписки и пользователь удаляются двумя запросами независимо от количества подписок.
+     * После фиксации транзакции по каждой удаленной подписке публикуется
+     * изменение, поэтому индекс популярности уменьшается ровно на те подписки,
+     * которые были удалены.
      *
      * @param id ID пользователя.
      * @throws UserNotFoundException если пользователь с указанным ID не найден.
      * @throws DataAccessException если произошла ошибка при доступе к данным.
      */
+    @MeteredOperation("user.delete")
+    @Transactional
     public void deleteUser(Long id) {
-        logger.info("Удаление пользователя с ID: {}", id);
+        logger.debug("Удаление пользователя с ID: {}", id);
         try {
-            if (!userRepository.existsById(id)) {
-                throw new UserNotFoundException(id);
+            List<Object[]> removed = shards.onShardOf(id, () -> {
+                List<Object[]> rows = subscriptionRepository.deleteAllByUserId(id);
+                if (userRepository.deleteUserById(id) == 0) {
+                    throw new UserNotFoundException(id);
+                }
+                return rows;
+            });
+            List<InvalidationEvent> changes = new ArrayList<>(removed.size() + 1);
+            for (Object[] row : removed) {
+                changes.add(InvalidationEvent.subscriptionDeleted(id, ((Number) row[0]).longValue(),
+                        (String) row[1], InvalidationEvent.epochSecond(row[2]), InvalidationEvent.transactionId(row[3])));
             }
-            userRepository.deleteById(id);
+            changes.add(InvalidationEvent.userDeleted(id));
+            AfterCommit.run(() -> invalidationBus.publish(changes));
         } catch (UserNotFoundException e) {
             logger.error("Пользователь с ID: {} не найден", id, e);
             throw e;
@@ -127,24 +195,76 @@ public class UserService {
     }
 
     /**
-     * Получает список всех пользователей.
+     * Получает страницу пользователей с использованием курсора по ID.
+     * Каждый шард возвращает свою страницу после курсора, итоговая страница
+     * составляется из наименьших ID объединения.
+     *
+     * @param after ID последнего пользователя предыдущей страницы или null для первой страницы.
+     * @param limit размер страницы, ограничивается диапазоном от 1 до 1000.
+     * @return страница пользователей и курсор для следующей страницы.
+     * @throws DataAccessException если произошла ошибка при доступе к данным.
+     */
+    @MeteredOperation("user.list")
+    public UserPageDTO getUsersPage(Long after, int limit) {
+        logger.debug("Получение страницы пользователей после ID: {}, размер: {}", after, limit);
+        try {
+            int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+            long cursor = after == null ? 0L : after;
+            List<UserDTO> users = new ArrayList<>();
+            for (List<UserDTO> shardPage : shards.onEachShard(
+                    () -> userRepository.findPageAfter(cursor, PageRequest.of(0, pageSize)))) {
+                users.addAll(shardPage);
+            }
+            users.sort(Comparator.comparing(UserDTO::getId));
+            if (users.size() > pageSize) {
+                users = users.subList(0, pageSize);
+            }
+            Long nextCursor = users.size() == pageSize ? users.get(users.size() - 1).getId() : null;
+            return new UserPageDTO(users, nextCursor);
+        } catch (DataAccessException e) {
+            logger.error("Ошибка при получении страницы пользователей после ID: {}", after, e);
+            throw new RuntimeException("Ошибка при получении всех пользователей", e);
+        }
+    }
+
+    /**
+     * Передает всех пользователей потребителю по одному, читая их однонаправленным курсором.
+     * При шардировании пользователи читаются страницами, объединенными по ID.
+     * Потребление памяти не зависит от количества пользователей.
      *
-     * @return список всех пользователей.
+     * @param consumer получатель пользователей.
      * @throws DataAccessException если произошла ошибка при доступе к данным.
      */
-    public List<UserDTO> getAllUsers() {
-        logger.info("Получение всех пользователей");
+    public void streamAllUsers(Consumer<UserDTO> consumer) {
+        logger.debug("Потоковое получение всех пользователей");
         try {
-            return userRepository.findAll().stream().map(user -> {
-                UserDTO userDTO = new UserDTO();
-                userDTO.setId(user.getId());
-                userDTO.setName(user.getName());
-                userDTO.setEmail(user.getEmail());
-                return userDTO;
-            }).collect(Collectors.toList());
+            if (shards.isSharded()) {
+                Long cursor = null;
+                do {
+                    UserPageDTO page = getUsersPage(cursor, MAX_PAGE_SIZE);
+                    page.getUsers().forEach(consumer);
+                    cursor = page.getNextCursor();
+                } while (cursor != null);
+                return;
+            }
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<UserDTO> users = userRepository.streamAll()) {
+                    users.forEach(consumer);
+                }
+            });
         } catch (DataAccessException e) {
-            logger.error("Ошибка при получении всех пользователей", e);
+            logger.error("Ошибка при потоковом получении всех пользователей", e);
             throw new RuntimeException("Ошибка при получении всех пользователей", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Преобразует сущность пользователя в DTO.
+     *
+     * @param user сущность пользователя.
+     * @return данные пользователя.
+     */
+    static UserDTO toDTO(User user) {
+        return new UserDTO(user.getId(), user.getName(), user.getEmail());
+    }
+}
@@ -0,0 +1,37 @@
+package ru.freeomsk.subscription.sharding;
+
+/**
+ * Распределение по остатку от деления: ID = локальный ID * N + номер шарда.
+ * При одном шарде глобальный ID совпадает с локальным.
+ */
+public class ModuloShardResolver implements ShardResolver {
+
+    private final int shardCount;
+
+    /**
+     * Конструктор для создания экземпляра ModuloShardResolver.
+     *
+     * @param shardCount количество шардов.
+     */
+    public ModuloShardResolver(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Количество шардов должно быть положительным: " + shardCount);
+        }
+        this.shardCount = shardCount;
+    }
+
+    @Override
+    public int shardCount() {
+        return shardCount;
+    }
+
+    @Override
+    public int shardForId(long id) {
+        return (int) Math.floorMod(id, (long) shardCount);
+    }
+
+    @Override
+    public long idFor(int shard, long localId) {
+        return Math.addExact(Math.multiplyExact(localId, (long) shardCount), shard);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.freeomsk.subscription.sharding;
+
+/**
+ * Распределение по диапазонам: шард i владеет ID от i * size + 1 до (i + 1) * size.
+ * Новые шарды можно добавлять, не перемещая существующие записи.
+ */
+public class RangeShardResolver implements ShardResolver {
+
+    private final int shardCount;
+    private final long rangeSize;
+
+    /**
+     * Конструктор для создания экземпляра RangeShardResolver.
+     *
+     * @param shardCount количество шардов.
+     * @param rangeSize количество ID в диапазоне одного шарда.
+     */
+    public RangeShardResolver(int shardCount, long rangeSize) {
+        if (shardCount < 1 || rangeSize < 1) {
+            throw new IllegalArgumentException("Количество шардов и размер диапазона должны быть положительными");
+        }
+        this.shardCount = shardCount;
+        this.rangeSize = rangeSize;
+    }
+
+    @Override
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     * ID вне всех диапазонов не может существовать и направляется в крайний шард,
+     * где запрос не найдет записей.
+     */
+    @Override
+    public int shardForId(long id) {
+        long shard = Math.max(id - 1, 0) / rangeSize;
+        return (int) Math.min(shard, shardCount - 1);
+    }
+
+    @Override
+    public long idFor(int shard, long localId) {
+        if (localId < 1 || localId > rangeSize) {
+            throw new IllegalStateException("Диапазон ID шарда " + shard + " исчерпан");
+        }
+        return shard * rangeSize + localId;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.freeomsk.subscription.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * Текущий шард потока выполнения и действующая стратегия распределения.
+ * Используется источником данных для выбора шарда и генератором ID,
+ * который создается Hibernate вне контекста Spring.
+ * Без настроенного шардирования используется единственный шард 0.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+    private static volatile ShardResolver resolver = new ModuloShardResolver(1);
+
+    private ShardContext() {
+    }
+
+    /**
+     * Устанавливает стратегию распределения. Вызывается один раз при запуске.
+     *
+     * @param shardResolver стратегия распределения.
+     */
+    public static void configure(ShardResolver shardResolver) {
+        resolver = shardResolver;
+    }
+
+    /**
+     * Возвращает действующую стратегию распределения.
+     *
+     * @return стратегия распределения.
+     */
+    public static ShardResolver resolver() {
+        return resolver;
+    }
+
+    /**
+     * Возвращает шард текущего потока.
+     *
+     * @return номер шарда, по умолчанию 0.
+     */
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard != null ? shard : 0;
+    }
+
+    /**
+     * Выполняет действие в указанном шарде.
+     *
+     * @param shard номер шарда.
+     * @param action действие.
+     * @param <T> тип результата.
+     * @return результат действия.
+     */
+    public static <T> T on(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
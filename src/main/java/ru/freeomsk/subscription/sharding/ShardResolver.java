@@ -0,0 +1,33 @@
+package ru.freeomsk.subscription.sharding;
+
+/**
+ * Стратегия распределения пользователей по шардам.
+ * ID пользователей и подписок кодируют номер шарда, в котором они созданы,
+ * поэтому шард определяется по ID без обращения к базе данных.
+ */
+public interface ShardResolver {
+
+    /**
+     * Возвращает количество шардов.
+     *
+     * @return количество шардов.
+     */
+    int shardCount();
+
+    /**
+     * Определяет шард, в котором хранится запись с указанным ID.
+     *
+     * @param id глобальный ID пользователя или подписки.
+     * @return номер шарда.
+     */
+    int shardForId(long id);
+
+    /**
+     * Строит глобальный ID из номера шарда и локального значения последовательности шарда.
+     *
+     * @param shard номер шарда.
+     * @param localId значение последовательности шарда, начиная с 1.
+     * @return глобально уникальный ID.
+     */
+    long idFor(int shard, long localId);
+}
@@ -0,0 +1,45 @@
+package ru.freeomsk.subscription.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Источник данных, выдающий соединения шарда текущего потока ({@link ShardContext}).
+ * Должен использоваться за LazyConnectionDataSourceProxy, чтобы шард можно было
+ * выбрать внутри уже начатой транзакции до ее первого запроса.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final List<HikariDataSource> ownedPools;
+
+    /**
+     * Конструктор для создания экземпляра ShardRoutingDataSource.
+     *
+     * @param shards источники данных шардов по порядку номеров.
+     * @param ownedPools пулы, которые закрываются вместе с источником данных.
+     */
+    public ShardRoutingDataSource(List<DataSource> shards, List<HikariDataSource> ownedPools) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setLenientFallback(false);
+        this.ownedPools = ownedPools;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+
+    @Override
+    public void close() {
+        ownedPools.forEach(HikariDataSource::close);
+    }
+}
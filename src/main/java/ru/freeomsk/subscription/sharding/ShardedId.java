@@ -0,0 +1,33 @@
+package ru.freeomsk.subscription.sharding;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * ID, уникальный во всех шардах. Локальное значение берется блоками из последовательности
+ * шарда, в котором выполняется вставка, и кодируется вместе с номером шарда
+ * стратегией {@link ShardResolver}.
+ */
+@IdGeneratorType(ShardedIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface ShardedId {
+
+    /**
+     * Имя последовательности в каждом шарде. Шаг последовательности должен быть равен {@link #blockSize()}.
+     *
+     * @return имя последовательности.
+     */
+    String sequence();
+
+    /**
+     * Количество локальных значений, получаемых за одно обращение к последовательности.
+     *
+     * @return размер блока.
+     */
+    int blockSize() default 50;
+}
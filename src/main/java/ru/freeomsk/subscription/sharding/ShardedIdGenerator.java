@@ -0,0 +1,85 @@
+package ru.freeomsk.subscription.sharding;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Генератор ID для {@link ShardedId}.
+ * Для каждого шарда хранится блок локальных значений: значение v последовательности
+ * с шагом blockSize закрепляет за генератором значения от v до v + blockSize - 1.
+ * Вставки по умолчанию (DEFAULT nextval) получают только само значение v,
+ * поэтому без шардирования оба способа не выдают одинаковых ID. При шардировании
+ * ID кодирует номер шарда и не совпадает с локальным значением, поэтому вставки
+ * по умолчанию не используются: импорт пользователей в этом режиме недоступен.
+ */
+public class ShardedIdGenerator implements IdentifierGenerator {
+
+    private final String nextValueSql;
+    private final int blockSize;
+    private final Map<Integer, Block> blocks = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор, вызываемый Hibernate для поля с аннотацией {@link ShardedId}.
+     *
+     * @param config параметры аннотации.
+     * @param member поле или метод ID.
+     * @param context контекст создания генератора.
+     */
+    public ShardedIdGenerator(ShardedId config, Member member, CustomIdGeneratorCreationContext context) {
+        this.nextValueSql = "SELECT nextval('" + config.sequence() + "')";
+        this.blockSize = config.blockSize();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        int shard = ShardContext.current();
+        long localId = blocks.computeIfAbsent(shard, key -> new Block()).next(session);
+        return ShardContext.resolver().idFor(shard, localId);
+    }
+
+    private long nextValue(SharedSessionContractImplementor session) {
+        try (PreparedStatement statement = session.getJdbcCoordinator().getLogicalConnection()
+                .getPhysicalConnection().prepareStatement(nextValueSql);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper()
+                    .convert(e, "Не удалось получить значение последовательности", nextValueSql);
+        }
+    }
+
+    /**
+     * Блок локальных значений одного шарда. Новый блок запрашивается под блокировкой
+     * ReentrantLock, а не synchronized: ожидание ответа базы данных внутри synchronized
+     * закрепляет виртуальный поток за потоком-носителем.
+     */
+    private final class Block {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private long next;
+        private long end;
+
+        private long next(SharedSessionContractImplementor session) {
+            lock.lock();
+            try {
+                if (next == end) {
+                    next = nextValue(session);
+                    end = next + blockSize;
+                }
+                return next++;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
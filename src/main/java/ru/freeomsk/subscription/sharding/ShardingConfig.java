@@ -0,0 +1,150 @@
+package ru.freeomsk.subscription.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.freeomsk.subscription.config.ConnectionPermitDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Конфигурация шардирования по ID пользователя (subscription.sharding.urls).
+ * Шард 0 - база данных spring.datasource, дополнительные шарды перечисляются
+ * в subscription.sharding.urls и наследуют настройки пула шарда 0.
+ * Стратегия распределения задается свойством subscription.sharding.strategy:
+ * modulo (по умолчанию) или range с размером диапазона subscription.sharding.range-size.
+ * Миграции Flyway применяются ко всем шардам. Несовместимо с чтением с реплик.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "subscription.sharding.urls")
+public class ShardingConfig {
+
+    /**
+     * Стратегия распределения пользователей по шардам.
+     *
+     * @param urls адреса JDBC дополнительных шардов.
+     * @param strategy название стратегии: modulo или range.
+     * @param rangeSize количество ID в диапазоне одного шарда для стратегии range.
+     * @param environment окружение приложения.
+     * @return стратегия распределения.
+     */
+    @Bean
+    ShardResolver shardResolver(@Value("${subscription.sharding.urls}") List<String> urls,
+                                @Value("${subscription.sharding.strategy:modulo}") String strategy,
+                                @Value("${subscription.sharding.range-size:1000000000000}") long rangeSize,
+                                Environment environment) {
+        if (environment.containsProperty("subscription.replicas.urls")) {
+            throw new IllegalStateException("Шардирование и чтение с реплик не могут быть включены одновременно");
+        }
+        int shardCount = urls.size() + 1;
+        ShardResolver resolver = switch (strategy) {
+            case "modulo" -> new ModuloShardResolver(shardCount);
+            case "range" -> new RangeShardResolver(shardCount, rangeSize);
+            default -> throw new IllegalStateException("Неизвестная стратегия шардирования: " + strategy);
+        };
+        ShardContext.configure(resolver);
+        return resolver;
+    }
+
+    /**
+     * Пул соединений шарда 0.
+     *
+     * @param properties свойства spring.datasource.
+     * @return пул соединений шарда 0.
+     */
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource shard0DataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Маршрутизирующий источник данных шардов.
+     *
+     * @param shardResolver стратегия распределения; создается до первой вставки.
+     * @param shard0DataSource источник данных шарда 0.
+     * @param urls адреса JDBC дополнительных шардов.
+     * @param meterRegistry реестр метрик для пулов шардов.
+     * @param environment окружение приложения.
+     * @return маршрутизирующий источник данных.
+     * @throws SQLException если не удалось получить настройки пула шарда 0.
+     */
+    @Bean
+    ShardRoutingDataSource shardRoutingDataSource(ShardResolver shardResolver,
+                                                  @Qualifier("shard0DataSource") DataSource shard0DataSource,
+                                                  @Value("${subscription.sharding.urls}") List<String> urls,
+                                                  ObjectProvider<MeterRegistry> meterRegistry,
+                                                  Environment environment) throws SQLException {
+        HikariDataSource shard0Pool = shard0DataSource.unwrap(HikariDataSource.class);
+        boolean virtualThreads = Threading.VIRTUAL.isActive(environment);
+        List<DataSource> shards = new ArrayList<>(shardResolver.shardCount());
+        List<HikariDataSource> pools = new ArrayList<>(urls.size());
+        shards.add(shard0DataSource);
+        for (String url : urls) {
+            HikariDataSource pool = new HikariDataSource();
+            shard0Pool.copyStateTo(pool);
+            pool.setJdbcUrl(url);
+            pool.setPoolName("shard-" + shards.size());
+            meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            pools.add(pool);
+            shards.add(virtualThreads
+                    ? new ConnectionPermitDataSource(pool, pool.getMaximumPoolSize(), pool.getConnectionTimeout())
+                    : pool);
+        }
+        return new ShardRoutingDataSource(shards, pools);
+    }
+
+    /**
+     * Источник данных приложения. Соединение запрашивается при первом обращении к нему,
+     * когда шард текущего потока уже выбран.
+     *
+     * @param shardRoutingDataSource маршрутизирующий источник данных шардов.
+     * @return ленивый прокси источника данных.
+     */
+    @Bean
+    @Primary
+    DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    /**
+     * Применяет миграции к шарду 0, а затем к каждому дополнительному шарду.
+     *
+     * @param shardRoutingDataSource маршрутизирующий источник данных шардов.
+     * @return стратегия миграции Flyway.
+     */
+    @Bean
+    FlywayMigrationStrategy shardedMigrationStrategy(ShardRoutingDataSource shardRoutingDataSource) {
+        return flyway -> {
+            flyway.migrate();
+            shardRoutingDataSource.getResolvedDataSources().forEach((shard, dataSource) -> {
+                if (!Integer.valueOf(0).equals(shard)) {
+                    Flyway.configure()
+                            .configuration(flyway.getConfiguration())
+                            .dataSource(dataSource)
+                            .load()
+                            .migrate();
+                }
+            });
+        };
+    }
+}
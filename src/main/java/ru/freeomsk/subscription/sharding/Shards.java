@@ -0,0 +1,103 @@
+package ru.freeomsk.subscription.sharding;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Выполнение операций сервисного слоя в нужном шарде.
+ * Операции одного пользователя выполняются в шарде, закодированном в его ID;
+ * новый пользователь размещается по хешу email, поэтому уникальность email
+ * обеспечивается ограничением внутри шарда. Глобальные запросы выполняются
+ * во всех шардах по очереди. Без настроенного шардирования все операции
+ * выполняются в единственном шарде 0.
+ * Транзакция не может охватывать несколько шардов: переключение шарда должно
+ * происходить до первого запроса транзакции.
+ */
+@Component
+public class Shards {
+
+    /**
+     * Возвращает количество шардов.
+     *
+     * @return количество шардов.
+     */
+    public int count() {
+        return ShardContext.resolver().shardCount();
+    }
+
+    /**
+     * Проверяет, распределены ли данные по нескольким шардам.
+     *
+     * @return true, если шардов больше одного.
+     */
+    public boolean isSharded() {
+        return count() > 1;
+    }
+
+    /**
+     * Возвращает номер шарда, которому принадлежит ID пользователя или подписки.
+     *
+     * @param id ID пользователя или подписки.
+     * @return номер шарда.
+     */
+    public int shardOf(Long id) {
+        return ShardContext.resolver().shardForId(id);
+    }
+
+    /**
+     * Выполняет действие в шарде, которому принадлежит ID пользователя или подписки.
+     *
+     * @param id ID пользователя или подписки.
+     * @param action действие.
+     * @param <T> тип результата.
+     * @return результат действия.
+     */
+    public <T> T onShardOf(Long id, Supplier<T> action) {
+        return ShardContext.on(shardOf(id), action);
+    }
+
+    /**
+     * Выполняет действие в шарде, в котором размещается пользователь с указанным email.
+     *
+     * @param email email пользователя.
+     * @param action действие.
+     * @param <T> тип результата.
+     * @return результат действия.
+     */
+    public <T> T onShardOfEmail(String email, Supplier<T> action) {
+        int shard = email == null ? 0 : Math.floorMod(email.toLowerCase(Locale.ROOT).hashCode(), count());
+        return ShardContext.on(shard, action);
+    }
+
+    /**
+     * Выполняет действие в указанном шарде.
+     *
+     * @param shard номер шарда.
+     * @param action действие.
+     * @param <T> тип результата.
+     * @return результат действия.
+     */
+    public <T> T onShard(int shard, Supplier<T> action) {
+        return ShardContext.on(shard, action);
+    }
+
+    /**
+     * Выполняет действие во всех шардах по очереди.
+     *
+     * @param action действие.
+     * @param <T> тип результата.
+     * @return результаты действия в порядке номеров шардов.
+     */
+    public <T> List<T> onEachShard(Supplier<T> action) {
+        int count = count();
+        List<T> results = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            results.add(ShardContext.on(shard, action));
+        }
+        return results;
+    }
+}
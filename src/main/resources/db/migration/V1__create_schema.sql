@@ -0,0 +1,34 @@
+-- Начальная схема базы данных подписок.
+-- Последовательности увеличиваются на 50 в соответствии с allocationSize сущностей.
+
+CREATE SEQUENCE services_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE subscriptions_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE users
+(
+    id    BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name  VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE services
+(
+    id           BIGINT PRIMARY KEY,
+    service_name VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_services_service_name UNIQUE (service_name)
+);
+
+CREATE TABLE subscriptions
+(
+    id         BIGINT PRIMARY KEY,
+    user_id    BIGINT NOT NULL,
+    service_id BIGINT NOT NULL,
+    CONSTRAINT fk_subscriptions_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_subscriptions_service FOREIGN KEY (service_id) REFERENCES services (id),
+    -- Уникальный индекс также обслуживает выборку подписок пользователя по user_id.
+    CONSTRAINT uk_subscriptions_user_service UNIQUE (user_id, service_id)
+);
+
+-- Подсчет подписок по сервисам и проверка внешнего ключа при удалении сервиса.
+CREATE INDEX idx_subscriptions_service_id ON subscriptions (service_id);
@@ -0,0 +1,3 @@
+-- ID пользователей выдаются генератором блоками по 50 значений (см. ShardedId),
+-- вставки без явного ID по-прежнему получают значение из той же последовательности.
+ALTER TABLE users ALTER COLUMN id SET INCREMENT BY 50;
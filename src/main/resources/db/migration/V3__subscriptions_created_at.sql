@@ -0,0 +1,8 @@
+-- Время создания подписки для популярности за период.
+-- У существующих подписок время создания неизвестно, они учитываются только в общем рейтинге.
+
+ALTER TABLE subscriptions ADD COLUMN created_at TIMESTAMP WITH TIME ZONE;
+ALTER TABLE subscriptions ALTER COLUMN created_at SET DEFAULT now();
+
+-- Заполнение почасовых агрегатов при старте приложения.
+CREATE INDEX idx_subscriptions_created_at ON subscriptions (created_at);
@@ -0,0 +1,103 @@
+package ru.freeomsk.subscription;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.service.UserService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+
+/**
+ * Основа интеграционных тестов: контекст приложения без веб-сервера над встроенным PostgreSQL.
+ * База данных запускается один раз на все тесты; схему создает Flyway при запуске контекста.
+ * Тесты не очищают базу данных, поэтому используют уникальные email и названия сервисов.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "subscription.hibernate.statistics=true",
+        "spring.jpa.show-sql=false",
+        "logging.level.root=WARN",
+        "logging.level.ru.freeomsk.subscription=WARN"
+})
+public abstract class PostgresIntegrationTest {
+
+    protected static final EmbeddedPostgres POSTGRES = start();
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserService userService;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> jdbcUrl("postgres") + "&reWriteBatchedInserts=true");
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    /**
+     * Возвращает адрес JDBC базы данных встроенного PostgreSQL.
+     *
+     * @param database имя базы данных.
+     * @return адрес JDBC.
+     */
+    protected static String jdbcUrl(String database) {
+        return POSTGRES.getJdbcUrl("postgres", database);
+    }
+
+    /**
+     * Возвращает статистику Hibernate, очищенную перед измерением.
+     *
+     * @return статистика Hibernate.
+     */
+    protected Statistics clearedStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    /**
+     * Возвращает уникальное значение с префиксом для данных одного теста.
+     *
+     * @param prefix префикс.
+     * @return уникальное значение.
+     */
+    protected static String unique(String prefix) {
+        return prefix + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * Создает пользователя с уникальным email.
+     *
+     * @return ID пользователя.
+     */
+    protected Long createUser() {
+        return createUser("user").getId();
+    }
+
+    /**
+     * Создает пользователя с указанным именем и уникальным email.
+     *
+     * @param name имя пользователя.
+     * @return данные созданного пользователя.
+     */
+    protected UserDTO createUser(String name) {
+        return userService.createUser(new UserDTO(null, name, unique(name) + "@example.com"));
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
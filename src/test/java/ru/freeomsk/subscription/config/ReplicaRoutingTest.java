@@ -0,0 +1,104 @@
+package ru.freeomsk.subscription.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.exception.SubscriptionNotBelongToUserException;
+import ru.freeomsk.subscription.exception.UserNotFoundException;
+import ru.freeomsk.subscription.service.SubscriptionService;
+import ru.freeomsk.subscription.service.UserService;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Чтение с реплик. Репликой служит отдельная база данных того же встроенного PostgreSQL
+ * без репликации, поэтому по наличию строки видно, какой узел выполнил запрос.
+ * Первая реплика в списке недоступна: чтения переходят ко второй.
+ */
+class ReplicaRoutingTest extends PostgresIntegrationTest {
+
+    private static final JdbcTemplate REPLICA = createReplica();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SubscriptionService subscriptionService;
+
+    @DynamicPropertySource
+    static void replicas(DynamicPropertyRegistry registry) {
+        registry.add("subscription.replicas.urls", () -> "jdbc:postgresql://localhost:1/unavailable," + jdbcUrl("replica"));
+        registry.add("subscription.replicas.connection-timeout", () -> "250ms");
+    }
+
+    @Test
+    void readOnlyQueriesGoToAvailableReplica() {
+        long id = randomId();
+        REPLICA.update("INSERT INTO users (id, name, email) VALUES (?, 'replica', ?)", id, unique("replica") + "@example.com");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(subscriptionService.getUserSubscriptions(id)).isEmpty();
+        }
+        assertThat(userService.getUserById(id)).get().extracting(UserDTO::getName).isEqualTo("replica");
+    }
+
+    @Test
+    void readsOfUserMissingOnReplicaFailUntilUserWrites() {
+        Long userId = createUserOnPrimaryOnly();
+
+        assertThatThrownBy(() -> subscriptionService.getUserSubscriptions(userId))
+                .isInstanceOf(UserNotFoundException.class);
+
+        subscriptionService.addSubscription(userId, new SubscriptionDTO(null, unique("replica"), null));
+
+        assertThat(subscriptionService.getUserSubscriptions(userId)).hasSize(1);
+    }
+
+    @Test
+    void writePathReadsFromPrimary() {
+        Long userId = createUserOnPrimaryOnly();
+        Long otherUserId = createUserOnPrimaryOnly();
+        String serviceName = unique("replica");
+
+        userService.updateUser(userId, new UserDTO(null, "updated", unique("updated") + "@example.com"));
+        List<SubscriptionDTO> added = subscriptionService.addSubscriptions(userId, List.of(serviceName));
+        SubscriptionDTO again = subscriptionService.addSubscription(userId, new SubscriptionDTO(null, serviceName, null));
+
+        assertThat(again.getId()).isEqualTo(added.get(0).getId());
+        assertThatThrownBy(() -> subscriptionService.deleteSubscription(otherUserId, again.getId()))
+                .isInstanceOf(SubscriptionNotBelongToUserException.class);
+        assertThat(REPLICA.queryForObject("SELECT count(*) FROM subscriptions WHERE user_id = ?", Long.class, userId))
+                .isZero();
+    }
+
+    private Long createUserOnPrimaryOnly() {
+        long id = randomId();
+        jdbcTemplate.update("INSERT INTO users (id, name, email) VALUES (?, 'primary', ?)", id, unique("primary") + "@example.com");
+        return id;
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(1_000_000_000_000L, 2_000_000_000_000L);
+    }
+
+    private static JdbcTemplate createReplica() {
+        new JdbcTemplate(POSTGRES.getPostgresDatabase()).execute("CREATE DATABASE replica");
+        DriverManagerDataSource replica = new DriverManagerDataSource(jdbcUrl("replica"), "postgres", "");
+        Flyway.configure().dataSource(replica).locations("classpath:db/migration").load().migrate();
+        return new JdbcTemplate(replica);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.freeomsk.subscription.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+import ru.freeomsk.subscription.exception.GlobalExceptionHandler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Добавление подписки через HTTP: контроллер, обработчик исключений и преобразователи
+ * сообщений приложения над встроенным PostgreSQL.
+ */
+class SubscriptionControllerTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private SubscriptionController subscriptionController;
+
+    @Autowired
+    private HttpMessageConverters messageConverters;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(subscriptionController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setMessageConverters(messageConverters.getConverters().toArray(HttpMessageConverter[]::new))
+                .build();
+    }
+
+    @Test
+    void addSubscriptionReturnsCreatedSubscription() throws Exception {
+        Long userId = createUser();
+        String serviceName = unique("http");
+
+        MvcResult result = mockMvc.perform(post("/subscriptions/users/{userId}", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"serviceName\":\"" + serviceName + "\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.serviceName").value(serviceName))
+                .andExpect(jsonPath("$.userId").value(userId))
+                .andExpect(jsonPath("$.id").isNumber())
+                .andReturn();
+
+        Long storedId = jdbcTemplate.queryForObject("SELECT s.id FROM subscriptions s " +
+                "JOIN services n ON n.id = s.service_id WHERE s.user_id = ? AND n.service_name = ?",
+                Long.class, userId, serviceName);
+        assertThat(result.getResponse().getContentAsString())
+                .isEqualTo("{\"id\":" + storedId + ",\"serviceName\":\"" + serviceName + "\",\"userId\":" + userId + "}");
+    }
+
+    @Test
+    void addSubscriptionForUnknownUserReturnsNotFound() throws Exception {
+        mockMvc.perform(post("/subscriptions/users/{userId}", Long.MAX_VALUE)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"serviceName\":\"" + unique("http") + "\"}"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN))
+                .andExpect(content().string("Пользователь с ID: " + Long.MAX_VALUE + " не найден"));
+    }
+}
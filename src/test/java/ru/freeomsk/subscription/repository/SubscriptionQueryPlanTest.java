@@ -0,0 +1,88 @@
+package ru.freeomsk.subscription.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Планы горячих запросов к подпискам на схеме из миграций: выборки по пользователю,
+ * по ID подписки и по времени создания выполняются по индексам, а не полным просмотром таблицы.
+ */
+class SubscriptionQueryPlanTest extends PostgresIntegrationTest {
+
+    private static final int USERS = 200;
+    private static final int SERVICES = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long userId;
+    private long subscriptionId;
+
+    @BeforeEach
+    void populate() {
+        String prefix = unique("plan");
+        jdbcTemplate.update("INSERT INTO users (name, email) " +
+                "SELECT 'plan', ? || '-' || i || '@example.com' FROM generate_series(1, ?) i", prefix, USERS);
+        jdbcTemplate.update("INSERT INTO services (id, service_name) " +
+                "SELECT nextval('services_seq'), ? || '-' || i FROM generate_series(1, ?) i", prefix, SERVICES);
+        // Подписки созданы равномерно за год, поэтому за последний час их единицы.
+        jdbcTemplate.update("INSERT INTO subscriptions (id, user_id, service_id, created_at) " +
+                "SELECT nextval('subscriptions_seq'), u.id, n.id, now() - random() * interval '365 days' " +
+                "FROM users u CROSS JOIN services n " +
+                "WHERE u.email LIKE ? || '-%' AND n.service_name LIKE ? || '-%'", prefix, prefix);
+        jdbcTemplate.execute("ANALYZE users");
+        jdbcTemplate.execute("ANALYZE services");
+        jdbcTemplate.execute("ANALYZE subscriptions");
+        userId = jdbcTemplate.queryForObject("SELECT min(id) FROM users WHERE email LIKE ? || '-%'", Long.class, prefix);
+        subscriptionId = jdbcTemplate.queryForObject("SELECT min(id) FROM subscriptions WHERE user_id = ?", Long.class, userId);
+    }
+
+    @Test
+    void userSubscriptionsUseUserServiceIndex() {
+        String plan = explain("SELECT s.id, n.service_name, s.user_id " +
+                "FROM subscriptions s JOIN services n ON n.id = s.service_id " +
+                "WHERE s.user_id = " + userId + " ORDER BY s.id");
+
+        assertThat(plan).contains("uk_subscriptions_user_service").doesNotContain("Seq Scan on subscriptions");
+    }
+
+    @Test
+    void ownedDeleteUsesPrimaryKey() {
+        String plan = explain("DELETE FROM subscriptions WHERE id = " + subscriptionId + " AND user_id = " + userId);
+
+        assertThat(plan).contains("subscriptions_pkey").doesNotContain("Seq Scan on subscriptions");
+    }
+
+    @Test
+    void recentSubscriptionsUseCreatedAtIndex() {
+        String plan = explain("SELECT n.service_name, CAST(floor(extract(epoch FROM s.created_at) / 3600) AS BIGINT) * 3600, COUNT(*) " +
+                "FROM subscriptions s JOIN services n ON n.id = s.service_id " +
+                "WHERE s.created_at >= now() - interval '1 hour' " +
+                "GROUP BY 1, 2");
+
+        assertThat(plan).contains("idx_subscriptions_created_at").doesNotContain("Seq Scan on subscriptions");
+    }
+
+    @Test
+    void duplicatePairIsRejectedByUniqueConstraint() {
+        Long serviceId = jdbcTemplate.queryForObject("SELECT service_id FROM subscriptions WHERE id = ?", Long.class, subscriptionId);
+
+        int inserted = jdbcTemplate.update("INSERT INTO subscriptions (id, user_id, service_id) " +
+                "VALUES (nextval('subscriptions_seq'), ?, ?) ON CONFLICT ON CONSTRAINT uk_subscriptions_user_service DO NOTHING",
+                userId, serviceId);
+
+        assertThat(inserted).isZero();
+    }
+
+    private String explain(String sql) {
+        List<String> lines = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+        return String.join("\n", lines);
+    }
+}
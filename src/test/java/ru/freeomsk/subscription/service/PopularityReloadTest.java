@@ -0,0 +1,107 @@
+package ru.freeomsk.subscription.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+import ru.freeomsk.subscription.repository.SubscriptionRepository;
+import ru.freeomsk.subscription.sharding.Shards;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Перестроение индекса и агрегатов популярности во время записи: подписки, зафиксированные
+ * до снимка и после него, учитываются ровно один раз, в каком бы порядке ни пришли их изменения.
+ * Запрос перестроения перехватывается, чтобы доставить изменения, пока он выполняется.
+ */
+class PopularityReloadTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private Shards shards;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void indexReloadCountsEverySubscriptionOnce() {
+        String serviceName = unique("reload");
+        List<InvalidationEvent> beforeReload = List.of(commit(serviceName), commit(serviceName));
+        SubscriptionRepository repository = mock(SubscriptionRepository.class, delegatesTo(subscriptionRepository));
+        ServicePopularityIndex index = new ServicePopularityIndex(repository, shards, transactionManager);
+        doAnswer(invocation -> {
+            // Изменение, зафиксированное до снимка, уведомление о котором пришло во время чтения,
+            // и изменение, зафиксированное после снимка.
+            index.added(beforeReload.get(0));
+            index.added(commitOnOtherThread(serviceName));
+            return subscriptionRepository.countSubscriptionsByService();
+        }).when(repository).countSubscriptionsByService();
+
+        index.reload();
+        index.added(beforeReload.get(1));
+
+        assertThat(index.count(serviceName)).isEqualTo(databaseCount(serviceName)).isEqualTo(3);
+    }
+
+    @Test
+    void rollupsReloadCountsEverySubscriptionOnce() {
+        String serviceName = unique("reload");
+        List<InvalidationEvent> beforeReload = List.of(commit(serviceName), commit(serviceName));
+        SubscriptionRepository repository = mock(SubscriptionRepository.class, delegatesTo(subscriptionRepository));
+        PopularityRollups rollups = new PopularityRollups(repository, shards, transactionManager);
+        doAnswer(invocation -> {
+            rollups.added(beforeReload.get(0));
+            rollups.added(commitOnOtherThread(serviceName));
+            return subscriptionRepository.countCreatedSinceByServiceAndHour(invocation.getArgument(0));
+        }).when(repository).countCreatedSinceByServiceAndHour(any(Instant.class));
+
+        rollups.reload();
+        rollups.added(beforeReload.get(1));
+
+        assertThat(rollups.count(serviceName)).isEqualTo(databaseCount(serviceName)).isEqualTo(3);
+    }
+
+    /**
+     * Добавляет подписку отдельной транзакцией и возвращает изменение, которое узел
+     * отправил бы после ее фиксации.
+     */
+    private InvalidationEvent commit(String serviceName) {
+        Long userId = createUser();
+        Long serviceId = jdbcTemplate.queryForObject("INSERT INTO services (id, service_name) " +
+                "VALUES (nextval('services_seq'), ?) ON CONFLICT (service_name) DO UPDATE SET service_name = EXCLUDED.service_name " +
+                "RETURNING id", Long.class, serviceName);
+        return jdbcTemplate.queryForObject("INSERT INTO subscriptions (id, user_id, service_id) " +
+                        "VALUES (nextval('subscriptions_seq'), ?, ?) " +
+                        "RETURNING id, CAST(extract(epoch FROM created_at) AS BIGINT), " +
+                        SubscriptionRepository.CURRENT_TRANSACTION_ID,
+                (rs, rowNum) -> InvalidationEvent.subscriptionAdded(userId, rs.getLong(1), serviceName,
+                        rs.getLong(2), rs.getLong(3)),
+                userId, serviceId);
+    }
+
+    /**
+     * Добавляет подписку в другом потоке: поток перестроения держит свою транзакцию чтения.
+     */
+    private InvalidationEvent commitOnOtherThread(String serviceName) {
+        return CompletableFuture.supplyAsync(() -> commit(serviceName)).join();
+    }
+
+    private long databaseCount(String serviceName) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM subscriptions s JOIN services n ON n.id = s.service_id " +
+                "WHERE n.service_name = ?", Long.class, serviceName);
+    }
+}
@@ -0,0 +1,167 @@
+package ru.freeomsk.subscription.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.exception.SubscriptionNotFoundException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Одновременные записи и чтения через кэши узла: добавление подписки остается идемпотентным,
+ * удаление выполняется ровно один раз, а подписки и пользователи, прочитанные после завершения
+ * операций, совпадают с базой данных. Чтение, выполненное одновременно с изменением,
+ * не оставляет в кэше пользователей прежние данные.
+ */
+class SubscriptionRaceTest extends PostgresIntegrationTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private SubscriptionService subscriptionService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentAddsCreateOneSubscription() throws Exception {
+        Long userId = createUser();
+        String serviceName = unique("race");
+
+        List<SubscriptionDTO> added = concurrently(() ->
+                subscriptionService.addSubscription(userId, new SubscriptionDTO(null, serviceName, null)));
+
+        Set<Long> ids = added.stream().map(SubscriptionDTO::getId).collect(Collectors.toSet());
+        assertThat(ids).hasSize(1);
+        assertThat(subscriptionService.getUserSubscriptions(userId))
+                .extracting(SubscriptionDTO::getId)
+                .containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    void concurrentDeletesRemoveSubscriptionOnce() throws Exception {
+        Long userId = createUser();
+        Long subscriptionId = subscriptionService.addSubscription(userId,
+                new SubscriptionDTO(null, unique("race"), null)).getId();
+
+        List<Boolean> deleted = concurrently(() -> {
+            try {
+                subscriptionService.deleteSubscription(userId, subscriptionId);
+                return true;
+            } catch (SubscriptionNotFoundException e) {
+                return false;
+            }
+        });
+
+        assertThat(deleted).containsOnlyOnce(true);
+        assertThat(subscriptionService.getUserSubscriptions(userId)).isEmpty();
+    }
+
+    @Test
+    void readsAfterRacingAddsAndDeletesMatchDatabase() throws Exception {
+        Long userId = createUser();
+        List<String> existing = new ArrayList<>(THREADS);
+        List<String> fresh = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            existing.add(unique("race"));
+            fresh.add(unique("race"));
+        }
+        List<SubscriptionDTO> added = subscriptionService.addSubscriptions(userId, existing);
+        AtomicInteger next = new AtomicInteger();
+
+        // Четные потоки удаляют существующую подписку, нечетные добавляют подписку на новый сервис.
+        concurrently(() -> {
+            int index = next.getAndIncrement();
+            if (index % 2 == 0) {
+                subscriptionService.deleteSubscription(userId, added.get(index).getId());
+            } else {
+                subscriptionService.addSubscription(userId, new SubscriptionDTO(null, fresh.get(index), null));
+            }
+            return subscriptionService.getUserSubscriptions(userId);
+        });
+
+        List<String> stored = jdbcTemplate.queryForList("SELECT n.service_name " +
+                "FROM subscriptions s JOIN services n ON n.id = s.service_id " +
+                "WHERE s.user_id = ? ORDER BY s.id", String.class, userId);
+        assertThat(stored).containsExactlyInAnyOrder(
+                existing.get(1), existing.get(3), existing.get(5), existing.get(7),
+                fresh.get(1), fresh.get(3), fresh.get(5), fresh.get(7));
+        assertThat(subscriptionService.getUserSubscriptions(userId))
+                .extracting(SubscriptionDTO::getServiceName)
+                .containsExactlyElementsOf(stored);
+    }
+
+    @Test
+    void cachedUserMatchesDatabaseAfterRacingUpdates() throws Exception {
+        UserDTO user = createUser("0");
+        AtomicInteger version = new AtomicInteger();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            // Чтение, загрузившее пользователя до изменения, не должно сохранить в кэше прежние данные.
+            concurrently(() -> {
+                userService.updateUser(user.getId(),
+                        new UserDTO(null, String.valueOf(version.incrementAndGet()), user.getEmail()));
+                return userService.getUserById(user.getId());
+            });
+
+            String stored = jdbcTemplate.queryForObject("SELECT name FROM users WHERE id = ?", String.class, user.getId());
+            assertThat(userService.getUserById(user.getId())).get().extracting(UserDTO::getName).isEqualTo(stored);
+        }
+    }
+
+    @Test
+    void deletedUserIsNotCachedByRacingReads() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            Long userId = createUser();
+            AtomicInteger next = new AtomicInteger();
+
+            concurrently(() -> {
+                if (next.getAndIncrement() == 0) {
+                    userService.deleteUser(userId);
+                }
+                return userService.getUserById(userId);
+            });
+
+            assertThat(userService.getUserById(userId)).isEmpty();
+            assertThat(userService.exists(userId)).isFalse();
+        }
+    }
+
+    private static <T> List<T> concurrently(Callable<T> task) throws InterruptedException, ExecutionException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>(THREADS);
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>(THREADS);
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ru.freeomsk.subscription.service;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.exception.UserNotFoundException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Чтение подписок пользователя: один запрос-проекция независимо от количества подписок,
+ * без загрузки сущностей в контекст персистентности.
+ */
+class SubscriptionReadPathTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private SubscriptionService subscriptionService;
+
+    @Test
+    void statementCountDoesNotGrowWithSubscriptions() {
+        Long userId = createUser();
+        subscriptionService.addSubscriptions(userId, serviceNames(2));
+
+        Statistics statistics = clearedStatistics();
+        List<SubscriptionDTO> few = subscriptionService.getUserSubscriptions(userId);
+        long fewStatements = statistics.getPrepareStatementCount();
+
+        subscriptionService.addSubscriptions(userId, serviceNames(50));
+        statistics = clearedStatistics();
+        List<SubscriptionDTO> many = subscriptionService.getUserSubscriptions(userId);
+
+        assertThat(few).hasSize(2);
+        assertThat(many).hasSize(52).allSatisfy(subscription -> assertThat(subscription.getUserId()).isEqualTo(userId));
+        assertThat(fewStatements).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(fewStatements);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void userWithoutSubscriptionsIsCheckedWithOneMoreStatement() {
+        Long userId = createUser();
+
+        Statistics statistics = clearedStatistics();
+
+        assertThat(subscriptionService.getUserSubscriptions(userId)).isEmpty();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void missingUserIsNotFound() {
+        assertThatThrownBy(() -> subscriptionService.getUserSubscriptions(Long.MAX_VALUE))
+                .isInstanceOf(UserNotFoundException.class);
+    }
+
+
+    private static List<String> serviceNames(int count) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(unique("read-path"));
+        }
+        return names;
+    }
+}
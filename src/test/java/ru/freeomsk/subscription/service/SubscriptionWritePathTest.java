@@ -0,0 +1,58 @@
+package ru.freeomsk.subscription.service;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.exception.UserNotFoundException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Добавление подписки по ссылке на пользователя: пользователь не загружается,
+ * а его отсутствие определяется по нарушению внешнего ключа.
+ */
+class SubscriptionWritePathTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private SubscriptionService subscriptionService;
+
+    @Test
+    void addSubscriptionInsertsWithoutLoadingUser() {
+        String serviceName = unique("write-path");
+        subscriptionService.addSubscription(createUser(), new SubscriptionDTO(null, serviceName, null));
+        Long userId = createUser();
+
+        Statistics statistics = clearedStatistics();
+        SubscriptionDTO added = subscriptionService.addSubscription(userId, new SubscriptionDTO(null, serviceName, null));
+
+        assertThat(added.getId()).isNotNull();
+        assertThat(added.getUserId()).isEqualTo(userId);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+        // Вставка и чтение ID транзакции для изменения, передаваемого индексам популярности.
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void addingExistingSubscriptionReturnsIt() {
+        Long userId = createUser();
+        String serviceName = unique("write-path");
+
+        SubscriptionDTO first = subscriptionService.addSubscription(userId, new SubscriptionDTO(null, serviceName, null));
+        SubscriptionDTO second = subscriptionService.addSubscription(userId, new SubscriptionDTO(null, serviceName, null));
+
+        assertThat(second.getId()).isEqualTo(first.getId());
+        assertThat(subscriptionService.getUserSubscriptions(userId)).hasSize(1);
+    }
+
+    @Test
+    void missingUserIsNotFound() {
+        assertThatThrownBy(() -> subscriptionService.addSubscription(Long.MAX_VALUE,
+                new SubscriptionDTO(null, unique("write-path"), null)))
+                .isInstanceOf(UserNotFoundException.class)
+                .hasMessage("Пользователь с ID: " + Long.MAX_VALUE + " не найден");
+    }
+}
@@ -0,0 +1,79 @@
+package ru.freeomsk.subscription.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+import ru.freeomsk.subscription.dto.UserDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Кэш пользователей при чтениях, выполняемых одновременно с изменениями:
+ * после завершения изменения ни одно чтение не возвращает прежние данные.
+ */
+class UserCacheConsistencyTest extends PostgresIntegrationTest {
+
+    private static final int READERS = 8;
+    private static final int UPDATES = 200;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void readsRacingWithUpdatesSeeEveryCompletedUpdate() throws Exception {
+        UserDTO user = createUser("0");
+        Long userId = user.getId();
+        String email = user.getEmail();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<Integer>> readers = new ArrayList<>(READERS);
+        try (ExecutorService executor = Executors.newFixedThreadPool(READERS)) {
+            for (int i = 0; i < READERS; i++) {
+                readers.add(executor.submit(() -> {
+                    int reads = 0;
+                    while (running.get()) {
+                        assertThat(userService.getUserById(userId)).isPresent();
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+            for (int version = 1; version <= UPDATES; version++) {
+                userService.updateUser(userId, new UserDTO(null, String.valueOf(version), email));
+                assertThat(userService.getUserById(userId)).get()
+                        .extracting(UserDTO::getName)
+                        .isEqualTo(String.valueOf(version));
+            }
+            running.set(false);
+            for (Future<Integer> reader : readers) {
+                assertThat(reader.get()).isPositive();
+            }
+        }
+    }
+
+    @Test
+    void deletedUserIsNotServedFromCache() {
+        Long userId = createUser("cached").getId();
+        assertThat(userService.getUserById(userId)).isPresent();
+
+        userService.deleteUser(userId);
+
+        assertThat(userService.getUserById(userId)).isEmpty();
+        assertThat(userService.exists(userId)).isFalse();
+    }
+
+    @Test
+    void cachedUserIsACopy() {
+        Long userId = createUser("cached").getId();
+
+        userService.getUserById(userId).orElseThrow().setName("changed by caller");
+
+        assertThat(userService.getUserById(userId)).get().extracting(UserDTO::getName).isEqualTo("cached");
+    }
+}
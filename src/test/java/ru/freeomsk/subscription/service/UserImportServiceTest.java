@@ -0,0 +1,134 @@
+package ru.freeomsk.subscription.service;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+import ru.freeomsk.subscription.dto.ImportErrorDTO;
+import ru.freeomsk.subscription.dto.ImportResultDTO;
+import ru.freeomsk.subscription.dto.UserDTO;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Импорт пользователей через COPY: ошибки в отдельных строках не прерывают загрузку,
+ * порция с ошибкой базы данных загружается по частям, а загруженные пользователи
+ * сразу видны через кэш пользователей.
+ */
+class UserImportServiceTest extends PostgresIntegrationTest {
+
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void duplicateAndMalformedRowsAreReportedByLine() {
+        String prefix = unique("import");
+        String existing = prefix + "-existing@example.com";
+        userService.createUser(new UserDTO(null, "existing", existing));
+        String csv = String.join("\n",
+                "name,email",
+                "first," + prefix + "-1@example.com",
+                "existing," + existing,
+                "repeated," + prefix + "-1@example.com",
+                "only one field",
+                "no email,not-an-email",
+                "\"unclosed,quote@example.com",
+                ",",
+                "\"Doe, John\"," + prefix + "-2@example.com");
+
+        ImportResultDTO result = importUsers(csv, CSV);
+
+        assertThat(result.getTotalRows()).isEqualTo(8);
+        assertThat(result.getImportedRows()).isEqualTo(2);
+        assertThat(result.getFailedRows()).isEqualTo(6);
+        assertThat(result.getErrors()).extracting(ImportErrorDTO::getLine, ImportErrorDTO::getReason).containsExactly(
+                tuple(5L, "Ожидается два поля: name,email"),
+                tuple(6L, "Некорректный email"),
+                tuple(7L, "Незакрытая кавычка в строке CSV"),
+                tuple(8L, "Не указано имя пользователя"),
+                tuple(3L, "Пользователь с email " + existing + " уже существует"),
+                tuple(4L, "Пользователь с email " + prefix + "-1@example.com уже существует"));
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM users WHERE email = ?", String.class,
+                prefix + "-2@example.com")).isEqualTo("Doe, John");
+    }
+
+    @Test
+    void failedChunkIsBisectedToTheFailingRow() {
+        String prefix = unique("import");
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            // Символ с кодом 0 допустим в JSON, но не в тексте PostgreSQL: COPY порции завершается ошибкой.
+            String name = i == 7 ? "bad\\u0000name" : "user " + i;
+            lines.add("{\"name\":\"" + name + "\",\"email\":\"" + prefix + "-" + i + "@example.com\"}");
+        }
+
+        ImportResultDTO result = importUsers(String.join("\n", lines), MediaType.APPLICATION_NDJSON);
+
+        assertThat(result.getImportedRows()).isEqualTo(9);
+        assertThat(result.getErrors()).extracting(ImportErrorDTO::getLine, ImportErrorDTO::getReason)
+                .containsExactly(tuple(7L, "Ошибка при сохранении в базу данных"));
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM users WHERE email LIKE ? || '-%'", Long.class, prefix))
+                .isEqualTo(9);
+    }
+
+    @Test
+    void tooLongLineIsRejectedWithoutStoppingImport() {
+        String prefix = unique("import");
+        String csv = String.join("\r\n",
+                "first," + prefix + "-1@example.com",
+                "long," + "x".repeat(10_000) + "@example.com",
+                "last," + prefix + "-2@example.com");
+
+        ImportResultDTO result = importUsers(csv, CSV);
+
+        assertThat(result.getTotalRows()).isEqualTo(3);
+        assertThat(result.getImportedRows()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(ImportErrorDTO::getLine, ImportErrorDTO::getReason)
+                .containsExactly(tuple(2L, "Длина строки превышает 4096 символов"));
+    }
+
+    @Test
+    void importedUsersReplaceCachedAbsence() {
+        String prefix = unique("import");
+        // Последовательность ID имеет шаг 50, и других вставок во время теста нет: после полученного
+        // значения две строки импорта получают ровно два следующих значения.
+        long reserved = jdbcTemplate.queryForObject("SELECT nextval('users_id_seq')", Long.class);
+        List<Long> expectedIds = List.of(reserved + 50, reserved + 100);
+        expectedIds.forEach(id -> assertThat(userService.getUserById(id)).isEmpty());
+
+        ImportResultDTO result = importUsers("first," + prefix + "-1@example.com\nsecond," + prefix + "-2@example.com", CSV);
+
+        assertThat(result.getImportedRows()).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM users WHERE email LIKE ? || '-%'", Long.class, prefix))
+                .containsExactlyInAnyOrderElementsOf(expectedIds);
+        for (Long id : expectedIds) {
+            assertThat(userService.getUserById(id)).get()
+                    .extracting(UserDTO::getEmail)
+                    .asString()
+                    .startsWith(prefix);
+        }
+        Statistics statistics = clearedStatistics();
+        assertThat(expectedIds).allSatisfy(id -> assertThat(userService.getUserById(id)).isPresent());
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    private ImportResultDTO importUsers(String content, MediaType contentType) {
+        return userImportService.importUsers(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), contentType);
+    }
+}
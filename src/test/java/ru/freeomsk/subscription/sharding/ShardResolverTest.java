@@ -0,0 +1,87 @@
+package ru.freeomsk.subscription.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Стратегии распределения по шардам: шард восстанавливается по построенному ID,
+ * а ID разных шардов не пересекаются.
+ */
+class ShardResolverTest {
+
+    @Test
+    void moduloEncodesShardInRemainder() {
+        ShardResolver resolver = new ModuloShardResolver(3);
+
+        assertThat(resolver.idFor(0, 1)).isEqualTo(3);
+        assertThat(resolver.idFor(2, 1)).isEqualTo(5);
+        assertThat(resolver.idFor(1, 7)).isEqualTo(22);
+        for (int shard = 0; shard < 3; shard++) {
+            for (long localId = 1; localId <= 100; localId++) {
+                assertThat(resolver.shardForId(resolver.idFor(shard, localId))).isEqualTo(shard);
+            }
+        }
+    }
+
+    @Test
+    void moduloWithOneShardKeepsLocalId() {
+        ShardResolver resolver = new ModuloShardResolver(1);
+
+        assertThat(resolver.idFor(0, 42)).isEqualTo(42);
+        assertThat(resolver.shardForId(42)).isZero();
+    }
+
+    @Test
+    void moduloRejectsOverflowingId() {
+        ShardResolver resolver = new ModuloShardResolver(2);
+
+        assertThatThrownBy(() -> resolver.idFor(1, Long.MAX_VALUE / 2 + 1))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void rangeEncodesShardInRange() {
+        ShardResolver resolver = new RangeShardResolver(3, 100);
+
+        assertThat(resolver.idFor(0, 1)).isEqualTo(1);
+        assertThat(resolver.idFor(0, 100)).isEqualTo(100);
+        assertThat(resolver.idFor(1, 1)).isEqualTo(101);
+        assertThat(resolver.idFor(2, 100)).isEqualTo(300);
+        for (int shard = 0; shard < 3; shard++) {
+            assertThat(resolver.shardForId(resolver.idFor(shard, 1))).isEqualTo(shard);
+            assertThat(resolver.shardForId(resolver.idFor(shard, 100))).isEqualTo(shard);
+        }
+    }
+
+    @Test
+    void rangeRoutesIdsOutsideAllRangesToEdgeShards() {
+        ShardResolver resolver = new RangeShardResolver(3, 100);
+
+        assertThat(resolver.shardForId(0)).isZero();
+        assertThat(resolver.shardForId(-5)).isZero();
+        assertThat(resolver.shardForId(301)).isEqualTo(2);
+    }
+
+    @Test
+    void exhaustedRangeIsRejected() {
+        ShardResolver resolver = new RangeShardResolver(2, 100);
+
+        assertThatThrownBy(() -> resolver.idFor(1, 101))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Диапазон ID шарда 1 исчерпан");
+        assertThatThrownBy(() -> resolver.idFor(0, 0))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Диапазон ID шарда 0 исчерпан");
+    }
+
+    @Test
+    void invalidConfigurationIsRejected() {
+        assertThatThrownBy(() -> new ModuloShardResolver(0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Количество шардов должно быть положительным: 0");
+        assertThatThrownBy(() -> new RangeShardResolver(2, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
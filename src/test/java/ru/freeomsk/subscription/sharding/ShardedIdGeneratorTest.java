@@ -0,0 +1,44 @@
+package ru.freeomsk.subscription.sharding;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Генератор ID блоками и вставки с ID по умолчанию в одну таблицу без шардирования:
+ * значение последовательности, полученное вставкой по умолчанию, закрепляет за ней
+ * весь блок, поэтому генератор не выдает ID из этого блока.
+ */
+class ShardedIdGeneratorTest extends PostgresIntegrationTest {
+
+    private static final int BLOCK_SIZE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void generatedBlocksDoNotCollideWithDefaultIds() {
+        List<Long> generated = new ArrayList<>();
+        List<Long> defaults = new ArrayList<>();
+        // Больше двух блоков генератора, между которыми вставки по умолчанию забирают значения последовательности.
+        for (int i = 0; i < 3 * BLOCK_SIZE; i++) {
+            if (i % 10 == 0) {
+                defaults.add(jdbcTemplate.queryForObject("INSERT INTO users (name, email) VALUES ('default', ?) RETURNING id",
+                        Long.class, unique("default") + "@example.com"));
+            } else {
+                generated.add(createUser());
+            }
+        }
+
+        assertThat(generated).doesNotHaveDuplicates().doesNotContainAnyElementsOf(defaults);
+        for (Long id : defaults) {
+            assertThat(generated).noneMatch(generatedId -> generatedId >= id && generatedId < id + BLOCK_SIZE);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.freeomsk.subscription.sharding;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.freeomsk.subscription.PostgresIntegrationTest;
+import ru.freeomsk.subscription.dto.SubscriptionDTO;
+import ru.freeomsk.subscription.dto.UserDTO;
+import ru.freeomsk.subscription.dto.UserPageDTO;
+import ru.freeomsk.subscription.service.SubscriptionService;
+import ru.freeomsk.subscription.service.UserService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Шардирование по ID пользователя на двух базах данных встроенного PostgreSQL:
+ * шард 0 - основная база данных тестов, шард 1 - отдельная база данных, схему которой
+ * создают миграции приложения. По наличию строк видно, в каком шарде выполнен запрос.
+ */
+class ShardingTest extends PostgresIntegrationTest {
+
+    private static final JdbcTemplate SHARD0 = connect("postgres");
+    private static final JdbcTemplate SHARD1 = createShard("shard1");
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SubscriptionService subscriptionService;
+
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) {
+        registry.add("subscription.sharding.urls", () -> jdbcUrl("shard1"));
+    }
+
+    @AfterAll
+    static void resetResolver() {
+        // Стратегия распределения хранится статически: остальные тесты выполняются без шардирования.
+        ShardContext.configure(new ModuloShardResolver(1));
+    }
+
+    @Test
+    void userReadsAndWritesGoToItsShard() {
+        Long userId = createUserOnShard(1);
+
+        SubscriptionDTO added = subscriptionService.addSubscription(userId, new SubscriptionDTO(null, unique("sharded"), null));
+
+        assertThat(added.getId() % 2).isEqualTo(1);
+        assertThat(count(SHARD1, "SELECT count(*) FROM users WHERE id = ?", userId)).isEqualTo(1);
+        assertThat(count(SHARD0, "SELECT count(*) FROM users WHERE id = ?", userId)).isZero();
+        assertThat(count(SHARD1, "SELECT count(*) FROM subscriptions WHERE id = ? AND user_id = ?", added.getId(), userId))
+                .isEqualTo(1);
+        assertThat(count(SHARD0, "SELECT count(*) FROM subscriptions WHERE user_id = ?", userId)).isZero();
+        assertThat(userService.getUserById(userId)).isPresent();
+        assertThat(subscriptionService.getUserSubscriptions(userId))
+                .extracting(SubscriptionDTO::getId)
+                .containsExactly(added.getId());
+
+        subscriptionService.deleteSubscription(userId, added.getId());
+
+        assertThat(count(SHARD1, "SELECT count(*) FROM subscriptions WHERE user_id = ?", userId)).isZero();
+        assertThat(subscriptionService.getUserSubscriptions(userId)).isEmpty();
+    }
+
+    @Test
+    void usersPageMergesShardsByIdWithKeysetCursor() {
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            created.add(createUserOnShard(0));
+            created.add(createUserOnShard(1));
+        }
+        long after = Collections.min(created) - 1;
+        long last = Collections.max(created);
+        List<Long> expected = Stream.of(SHARD0, SHARD1)
+                .flatMap(shard -> shard.queryForList("SELECT id FROM users WHERE id > ? AND id <= ?",
+                        Long.class, after, last).stream())
+                .sorted()
+                .toList();
+
+        List<Long> paged = new ArrayList<>();
+        Long cursor = after;
+        while (cursor != null && cursor < last) {
+            long previous = cursor;
+            UserPageDTO page = userService.getUsersPage(cursor, PAGE_SIZE);
+            List<Long> ids = page.getUsers().stream().map(UserDTO::getId).toList();
+            assertThat(ids).hasSizeLessThanOrEqualTo(PAGE_SIZE).isSorted().allMatch(id -> id > previous);
+            if (page.getNextCursor() != null) {
+                assertThat(ids).hasSize(PAGE_SIZE).last().isEqualTo(page.getNextCursor());
+            }
+            paged.addAll(ids);
+            cursor = page.getNextCursor();
+        }
+
+        assertThat(paged.stream().filter(id -> id <= last).toList()).isEqualTo(expected).containsAll(created);
+    }
+
+    @Test
+    void generatedIdsEncodeShardAndDoNotCollideAcrossShards() {
+        List<Long> shard0 = new ArrayList<>();
+        List<Long> shard1 = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            shard0.add(createUserOnShard(0));
+            shard1.add(createUserOnShard(1));
+        }
+
+        assertThat(shard0).doesNotHaveDuplicates().allMatch(id -> id % 2 == 0);
+        assertThat(shard1).doesNotHaveDuplicates().allMatch(id -> id % 2 == 1);
+    }
+
+    /**
+     * Создает пользователей, пока один из них не будет размещен в указанном шарде.
+     * Шард выбирается по хешу email, поэтому в среднем нужно две попытки.
+     */
+    private Long createUserOnShard(int shard) {
+        while (true) {
+            Long id = createUser();
+            if (ShardContext.resolver().shardForId(id) == shard) {
+                return id;
+            }
+        }
+    }
+
+    private static long count(JdbcTemplate shard, String sql, Object... args) {
+        return shard.queryForObject(sql, Long.class, args);
+    }
+
+    private static JdbcTemplate connect(String database) {
+        return new JdbcTemplate(new DriverManagerDataSource(jdbcUrl(database), "postgres", ""));
+    }
+
+    private static JdbcTemplate createShard(String database) {
+        SHARD0.execute("CREATE DATABASE " + database);
+        return connect(database);
+    }
+}